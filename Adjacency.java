@@ -0,0 +1,181 @@
+package src.graph;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Storage for the friendship edges of a SocialNetwork.
+ *
+ * Vertices are the indices of the profiles in the network, 0 to size()-1. Every method works on a
+ * single directed entry (row, col); SocialNetwork sets both (i, j) and (j, i) to keep the graph
+ * undirected. Implementations are not thread safe, except that add() calls on different rows must
+ * not interfere with each other so that batches can fill rows in parallel.
+ */
+public interface Adjacency {
+
+    /**
+     * Number of vertices currently in use.
+     */
+    int size();
+
+    /**
+     * Number of vertices that fit before the storage has to grow.
+     */
+    int capacity();
+
+    /**
+     * Make sure at least minCapacity vertices fit without growing again.
+     *
+     * @param minCapacity number of vertices the storage must be able to hold
+     */
+    void reserve(int minCapacity);
+
+    /**
+     * Add vertices with no edges until there are newSize of them.
+     *
+     * Storage grows by at least doubling, so repeated calls are amortized O(1) per vertex
+     * (plus whatever the representation needs to clear).
+     *
+     * @param newSize new number of vertices, at least size()
+     */
+    void grow(int newSize);
+
+    /**
+     * Whether the entry (row, col) is set.
+     */
+    boolean contains(int row, int col);
+
+    /**
+     * Set the entry (row, col).
+     *
+     * @return true if the entry was not set before
+     */
+    boolean add(int row, int col);
+
+    /**
+     * Drop the vertices from newSize on. Their rows and columns must already be empty.
+     *
+     * @param newSize new number of vertices, at most size()
+     */
+    void truncate(int newSize);
+
+    /**
+     * Clear the entry (row, col).
+     *
+     * @return true if the entry was set before
+     */
+    boolean remove(int row, int col);
+
+    /**
+     * Number of entries set in the row.
+     */
+    int degree(int row);
+
+    /**
+     * Call action with every col whose entry (row, col) is set, in increasing order.
+     */
+    void forEachNeighbor(int row, IntConsumer action);
+
+    /**
+     * Whether predicate holds for any col set in the row. Stops at the first match.
+     */
+    default boolean anyNeighbor(int row, IntPredicate predicate) {
+        boolean[] found = new boolean[1];
+        forEachNeighbor(row, j -> {
+            if (!found[0] && predicate.test(j)) {
+                found[0] = true;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Call action with every col set in both row a and row b, in increasing order.
+     */
+    default void forEachCommonNeighbor(int a, int b, IntConsumer action) {
+        forEachNeighbor(a, j -> {
+            if (contains(b, j)) {
+                action.accept(j);
+            }
+        });
+    }
+
+    /**
+     * Number of cols set in both row a and row b.
+     */
+    default int countCommonNeighbors(int a, int b) {
+        int[] count = new int[1];
+        forEachCommonNeighbor(a, b, j -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * Call action once per undirected edge, as (u, v) with u < v, for every set entry above the diagonal.
+     *
+     * Implementations visit edges in increasing (u, v) order and do not allocate.
+     */
+    default void forEachEdge(IntIntConsumer action) {
+        int n = size();
+        for (int u = 0; u < n; u++) {
+            int row = u;
+            forEachNeighbor(u, v -> {
+                if (row < v) {
+                    action.accept(row, v);
+                }
+            });
+        }
+    }
+
+    /**
+     * The cols set in the row, in increasing order, as a new array.
+     */
+    default int[] neighbors(int row) {
+        int[] result = new int[degree(row)];
+        int[] count = new int[1];
+        forEachNeighbor(row, j -> result[count[0]++] = j);
+        return result;
+    }
+
+    /**
+     * The smallest col, at least from, whose entry (row, col) is set, or -1 if there is none.
+     *
+     * Lets a row be walked a piece at a time, e.g. one page of a friend list, without visiting the cols
+     * before from again.
+     */
+    default int nextNeighbor(int row, int from) {
+        int[] next = {-1};
+        anyNeighbor(row, j -> {
+            if (j >= from) {
+                next[0] = j;
+                return true;
+            }
+            return false;
+        });
+        return next[0];
+    }
+
+    /**
+     * An immutable view of the current edges, unaffected by later changes to this adjacency.
+     *
+     * Any attempt to modify the view throws UnsupportedOperationException. The backends that keep one
+     * array per row share their rows with the view and copy a row only when it is next changed, so
+     * taking a snapshot costs O(n) and each row is copied at most once per snapshot. The default copies
+     * every edge into a CsrAdjacency.
+     */
+    default Adjacency snapshot() {
+        return new CsrAdjacency(this);
+    }
+
+    /**
+     * Whether every method that changes the edges throws UnsupportedOperationException, as on a
+     * snapshot(). Lets a caller that makes several changes refuse before making the first.
+     */
+    default boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * Approximate heap footprint of the storage in bytes, including unused capacity.
+     */
+    long bytesUsed();
+}
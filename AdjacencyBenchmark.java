@@ -0,0 +1,77 @@
+package src.graph;
+
+import java.util.Random;
+
+/**
+ * Compares memory use and throughput of the Adjacency implementations.
+ *
+ * Usage: java src.graph.AdjacencyBenchmark [vertices] [friendsPerVertex]
+ *
+ * Builds the same random graph in each backend and times edge inserts, random lookups and full
+ * neighbor enumeration. Numbers are rough wall-clock figures, not a substitute for a JMH run.
+ */
+public class AdjacencyBenchmark {
+    // Keeps the JIT from discarding lookup results
+    private static long sink;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int friends = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        System.out.printf("%d vertices, %d friends per vertex%n", n, friends);
+        System.out.printf("%-20s %12s %14s %14s %14s%n", "backend", "MB", "adds/s", "lookups/s", "neighbors/s");
+        // Run twice so the second round is JIT-compiled
+        for (int round = 0; round < 2; round++) {
+            run("BitMatrixAdjacency", new BitMatrixAdjacency(), n, friends);
+            run("IntMatrixAdjacency", new IntMatrixAdjacency(), n, friends);
+            run("SparseAdjacency", new SparseAdjacency(), n, friends);
+        }
+    }
+
+    private static void run(String name, Adjacency adjacency, int n, int friends) {
+        Random random = new Random(42);
+        long edges = (long) n * friends / 2;
+
+        long start = System.nanoTime();
+        adjacency.grow(n);
+        for (long e = 0; e < edges; e++) {
+            int i = random.nextInt(n);
+            int j = random.nextInt(n);
+            if (i != j && adjacency.add(i, j)) {
+                adjacency.add(j, i);
+            }
+        }
+        double addsPerSec = edges / seconds(start);
+
+        report(name, adjacency, n, random, String.format("%.0f", addsPerSec));
+        if (adjacency instanceof SparseAdjacency) {
+            report("CsrAdjacency", new CsrAdjacency(adjacency), n, random, "-");
+        }
+    }
+
+    private static void report(String name, Adjacency adjacency, int n, Random random, String addsPerSec) {
+        int lookups = 10_000_000;
+        int hits = 0;
+        long start = System.nanoTime();
+        for (int k = 0; k < lookups; k++) {
+            if (adjacency.contains(random.nextInt(n), random.nextInt(n))) {
+                hits++;
+            }
+        }
+        double lookupsPerSec = lookups / seconds(start);
+        sink += hits;
+
+        long[] visited = new long[1];
+        start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            adjacency.forEachNeighbor(i, j -> visited[0]++);
+        }
+        double neighborsPerSec = visited[0] / seconds(start);
+
+        System.out.printf("%-20s %12.1f %14s %14.0f %14.0f%n", name, adjacency.bytesUsed() / 1e6,
+            addsPerSec, lookupsPerSec, neighborsPerSec);
+    }
+
+    private static double seconds(long startNanos) {
+        return Math.max(1, System.nanoTime() - startNanos) / 1e9;
+    }
+}
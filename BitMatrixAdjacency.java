@@ -0,0 +1,271 @@
+package src.graph;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Adjacency matrix with every row packed into a long[] bitset.
+ *
+ * Uses 1 bit per cell instead of the 32 bits of IntMatrixAdjacency. degree() is a popcount over the
+ * row and forEachNeighbor() jumps from set bit to set bit, skipping zero words entirely.
+ *
+ * snapshot() shares the rows with the snapshot instead of copying them, and a row is copied the first
+ * time it changes after a snapshot, so later changes never show through.
+ */
+public class BitMatrixAdjacency implements Adjacency {
+    private long[][] rows;
+    private int size;
+    // Number of snapshots taken, and for each row the value it had when the row was last copied
+    private int version;
+    private int[] rowVersions;
+    private final boolean readOnly;
+
+    public BitMatrixAdjacency() {
+        this(0);
+    }
+
+    /**
+     * @param initialCapacity number of vertices to allocate room for
+     */
+    public BitMatrixAdjacency(int initialCapacity) {
+        this.rows = new long[initialCapacity][words(initialCapacity)];
+        this.rowVersions = new int[initialCapacity];
+        this.readOnly = false;
+    }
+
+    // A snapshot, sharing rows with the adjacency it was taken from
+    private BitMatrixAdjacency(long[][] rows, int size) {
+        this.rows = rows;
+        this.size = size;
+        this.readOnly = true;
+    }
+
+    /**
+     * Number of longs needed to hold n bits.
+     */
+    static int words(int n) {
+        return (n + 63) >>> 6;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return rows.length;
+    }
+
+    @Override
+    public void reserve(int minCapacity) {
+        checkWritable();
+        if (minCapacity > rows.length) {
+            resize(minCapacity);
+        }
+    }
+
+    @Override
+    public void grow(int newSize) {
+        checkWritable();
+        if (newSize > rows.length) {
+            resize(Math.max(newSize, rows.length * 2));
+        }
+        size = Math.max(size, newSize);
+    }
+
+    private void resize(int newCapacity) {
+        int newWords = words(newCapacity);
+        int usedWords = words(size);
+        long[][] resized = new long[newCapacity][];
+        for (int i = 0; i < newCapacity; i++) {
+            resized[i] = new long[newWords];
+            if (i < size) {
+                System.arraycopy(rows[i], 0, resized[i], 0, usedWords);
+            }
+        }
+        this.rows = resized;
+        // Every row is new
+        this.rowVersions = new int[newCapacity];
+        Arrays.fill(rowVersions, version);
+    }
+
+    @Override
+    public void truncate(int newSize) {
+        checkWritable();
+        size = Math.min(size, newSize);
+    }
+
+    @Override
+    public boolean contains(int row, int col) {
+        return (rows[row][col >>> 6] & (1L << col)) != 0;
+    }
+
+    @Override
+    public boolean add(int row, int col) {
+        checkWritable();
+        long bit = 1L << col;
+        if ((rows[row][col >>> 6] & bit) != 0) {
+            return false;
+        }
+        writableRow(row)[col >>> 6] |= bit;
+        return true;
+    }
+
+    @Override
+    public boolean remove(int row, int col) {
+        checkWritable();
+        long bit = 1L << col;
+        if ((rows[row][col >>> 6] & bit) == 0) {
+            return false;
+        }
+        writableRow(row)[col >>> 6] &= ~bit;
+        return true;
+    }
+
+    @Override
+    public int degree(int row) {
+        long[] r = rows[row];
+        int count = 0;
+        for (int w = words(size) - 1; w >= 0; w--) {
+            count += Long.bitCount(r[w]);
+        }
+        return count;
+    }
+
+    @Override
+    public void forEachNeighbor(int row, IntConsumer action) {
+        long[] r = rows[row];
+        int usedWords = words(size);
+        for (int w = 0; w < usedWords; w++) {
+            long word = r[w];
+            while (word != 0) {
+                action.accept((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    @Override
+    public boolean anyNeighbor(int row, IntPredicate predicate) {
+        long[] r = rows[row];
+        int usedWords = words(size);
+        for (int w = 0; w < usedWords; w++) {
+            long word = r[w];
+            while (word != 0) {
+                if (predicate.test((w << 6) + Long.numberOfTrailingZeros(word))) {
+                    return true;
+                }
+                word &= word - 1;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachCommonNeighbor(int a, int b, IntConsumer action) {
+        long[] ra = rows[a];
+        long[] rb = rows[b];
+        int usedWords = words(size);
+        for (int w = 0; w < usedWords; w++) {
+            long word = ra[w] & rb[w];
+            while (word != 0) {
+                action.accept((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    @Override
+    public int countCommonNeighbors(int a, int b) {
+        long[] ra = rows[a];
+        long[] rb = rows[b];
+        int count = 0;
+        for (int w = words(size) - 1; w >= 0; w--) {
+            count += Long.bitCount(ra[w] & rb[w]);
+        }
+        return count;
+    }
+
+    @Override
+    public int nextNeighbor(int row, int from) {
+        from = Math.max(0, from);
+        if (from >= size) {
+            return -1;
+        }
+        long[] r = rows[row];
+        int usedWords = words(size);
+        int w = from >>> 6;
+        // The shift only uses the low 6 bits of from, masking off the cols before it in its word
+        long word = r[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == usedWords) {
+                return -1;
+            }
+            word = r[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    public void forEachEdge(IntIntConsumer action) {
+        int usedWords = words(size);
+        for (int u = 0; u < size; u++) {
+            long[] r = rows[u];
+            int w = (u + 1) >>> 6;
+            if (w >= usedWords) {
+                continue;
+            }
+            // Drop columns <= u from the first word (the shift distance is taken mod 64)
+            long word = r[w] & (-1L << (u + 1));
+            while (true) {
+                while (word != 0) {
+                    action.accept(u, (w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+                if (++w >= usedWords) {
+                    break;
+                }
+                word = r[w];
+            }
+        }
+    }
+
+    @Override
+    public Adjacency snapshot() {
+        if (readOnly) {
+            return this;
+        }
+        version++;
+        return new BitMatrixAdjacency(Arrays.copyOf(rows, size), size);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // Row row, copied first if a snapshot may share it
+    private long[] writableRow(int row) {
+        long[] r = rows[row];
+        if (rowVersions[row] != version) {
+            r = r.clone();
+            rows[row] = r;
+            rowVersions[row] = version;
+        }
+        return r;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("BitMatrixAdjacency snapshot is read-only");
+        }
+    }
+
+    @Override
+    public long bytesUsed() {
+        long cap = rows.length;
+        return 16 + 4 * cap + cap * (16 + 8L * words(rows.length));
+    }
+}
@@ -0,0 +1,287 @@
+package src.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe variant of SocialNetwork for servers with many reader threads and a few writers.
+ *
+ * Reads (searchFriend, allFriends, degree, lookups) never take a lock: they read an immutable State
+ * published through a volatile field, and each row is an AtomicLongArray bitset. Writers lock the
+ * stripes of both rows of an edge, in a fixed order, so the (i, j) and (j, i) entries of an
+ * undirected edge always change together and no two writers can leave an edge half set.
+ *
+ * Profiles are added and renamed under a small lock of their own, so edge writers keep going while a
+ * profile is added. Only adding a profile that needs more capacity holds off edge writers, while the
+ * rows are copied into a larger State; readers keep using the old State until the new one is
+ * published and are never blocked. A reader that races with addFriend() may see the edge from one
+ * side a moment before the other.
+ */
+public class ConcurrentSocialNetwork implements ProfileIndex {
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] rowLocks = new ReentrantLock[STRIPES];
+    // Edge writers hold it shared; addProfile holds it exclusively so rows cannot change while copied
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+    // Held to add or rename a profile, so checking a username and claiming it is one step
+    private final ReentrantLock profileLock = new ReentrantLock();
+    private final ConcurrentHashMap<String, Integer> usernameIndex = new ConcurrentHashMap<>();
+    private volatile State state;
+
+    /**
+     * Everything a reader needs, replaced as a whole when profiles are added.
+     *
+     * Slots at or past size are not visible to readers of this State, so a writer can fill the next
+     * free slot in place before publishing a State with a larger size.
+     */
+    private static final class State {
+        final Profile[] profiles;
+        final AtomicLongArray[] rows;
+        final int size;
+
+        State(Profile[] profiles, AtomicLongArray[] rows, int size) {
+            this.profiles = profiles;
+            this.rows = rows;
+            this.size = size;
+        }
+    }
+
+    public ConcurrentSocialNetwork() {
+        for (int i = 0; i < STRIPES; i++) {
+            rowLocks[i] = new ReentrantLock();
+        }
+        this.state = new State(new Profile[0], new AtomicLongArray[0], 0);
+    }
+
+    /**
+     * Number of profiles in the network.
+     */
+    public int size() {
+        return state.size;
+    }
+
+    /**
+     * Add a profile unless its username is already taken.
+     *
+     * @return true if the profile was added
+     */
+    public boolean addProfile(Profile newProfile) {
+        if (newProfile == null) {
+            return false;
+        }
+        profileLock.lock();
+        try {
+            if (usernameIndex.containsKey(newProfile.getUsername())) {
+                return false;
+            }
+            State current = state;
+            int n = current.size;
+            if (n == current.profiles.length) {
+                current = grow(current);
+            }
+            // Rows are shared by every State of the same capacity, so edges set through the old State
+            // are kept
+            current.profiles[n] = newProfile;
+            state = new State(current.profiles, current.rows, n + 1);
+            // Published after the State, so an id found in the index is always < state.size
+            usernameIndex.put(newProfile.getUsername(), n);
+            newProfile.joinedNetwork(this);
+            return true;
+        } finally {
+            profileLock.unlock();
+        }
+    }
+
+    // Publish a State with twice the capacity of current, which must be full
+    private State grow(State current) {
+        structureLock.writeLock().lock();
+        try {
+            int n = current.size;
+            int capacity = Math.max(8, n * 2);
+            State grown = new State(Arrays.copyOf(current.profiles, capacity), resizeRows(current.rows, n, capacity), n);
+            state = grown;
+            return grown;
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    private static AtomicLongArray[] resizeRows(AtomicLongArray[] rows, int size, int capacity) {
+        int words = BitMatrixAdjacency.words(capacity);
+        int usedWords = BitMatrixAdjacency.words(size);
+        AtomicLongArray[] resized = new AtomicLongArray[capacity];
+        for (int i = 0; i < capacity; i++) {
+            resized[i] = new AtomicLongArray(words);
+            for (int w = 0; i < size && w < usedWords; w++) {
+                resized[i].set(w, rows[i].get(w));
+            }
+        }
+        return resized;
+    }
+
+    /**
+     * Vertex id of a profile, or -1 if it is not in the network.
+     */
+    public int indexOf(Profile profile) {
+        if (profile == null) {
+            return -1;
+        }
+        Integer id = usernameIndex.get(profile.getUsername());
+        return id != null && state.profiles[id].equals(profile) ? id : -1;
+    }
+
+    @Override
+    public Profile getProfile(String username) {
+        Integer id = usernameIndex.get(username);
+        return id != null ? state.profiles[id] : null;
+    }
+
+    /**
+     * Profile at the given vertex id.
+     *
+     * @throws IndexOutOfBoundsException if id is not between 0 and size()-1
+     */
+    public Profile getProfile(int id) {
+        State s = state;
+        if (!isVertex(s, id)) {
+            throw new IndexOutOfBoundsException("id " + id + " of " + s.size);
+        }
+        return s.profiles[id];
+    }
+
+    /**
+     * @throws IllegalArgumentException if another profile took the new username after
+     *         Profile.changeUsername() checked it; the index is left unchanged
+     */
+    @Override
+    public void usernameChanged(Profile profile, String oldUsername) {
+        profileLock.lock();
+        try {
+            Integer id = usernameIndex.get(oldUsername);
+            if (id == null || oldUsername.equals(profile.getUsername())) {
+                return;
+            }
+            Integer existing = usernameIndex.putIfAbsent(profile.getUsername(), id);
+            if (existing != null) {
+                throw new IllegalArgumentException("Username '" + profile.getUsername() + "' is already taken");
+            }
+            usernameIndex.remove(oldUsername);
+        } finally {
+            profileLock.unlock();
+        }
+    }
+
+    public boolean searchFriend(Profile primaryUser, Profile friendLookup) {
+        return searchFriend(indexOf(primaryUser), indexOf(friendLookup));
+    }
+
+    public boolean searchFriend(int primaryUser, int friendLookup) {
+        State s = state;
+        if (!isVertex(s, primaryUser) || !isVertex(s, friendLookup)) {
+            return false;
+        }
+        return (s.rows[primaryUser].get(friendLookup >>> 6) & (1L << friendLookup)) != 0;
+    }
+
+    public ArrayList<Profile> allFriends(Profile primaryUser) {
+        return allFriends(indexOf(primaryUser));
+    }
+
+    public ArrayList<Profile> allFriends(int primaryUser) {
+        ArrayList<Profile> friends = new ArrayList<>();
+        State s = state;
+        if (!isVertex(s, primaryUser)) {
+            return friends;
+        }
+        AtomicLongArray row = s.rows[primaryUser];
+        int usedWords = BitMatrixAdjacency.words(s.size);
+        for (int w = 0; w < usedWords; w++) {
+            long word = row.get(w);
+            while (word != 0) {
+                friends.add(s.profiles[(w << 6) + Long.numberOfTrailingZeros(word)]);
+                word &= word - 1;
+            }
+        }
+        return friends;
+    }
+
+    /**
+     * Number of friends of the given vertex id, or 0 if it is not in the network.
+     */
+    public int degree(int primaryUser) {
+        State s = state;
+        if (!isVertex(s, primaryUser)) {
+            return 0;
+        }
+        AtomicLongArray row = s.rows[primaryUser];
+        int count = 0;
+        for (int w = BitMatrixAdjacency.words(s.size) - 1; w >= 0; w--) {
+            count += Long.bitCount(row.get(w));
+        }
+        return count;
+    }
+
+    public void addFriend(Profile primaryUser, Profile friend) {
+        addFriend(indexOf(primaryUser), indexOf(friend));
+    }
+
+    /**
+     * Add a friendship between two vertex ids. Does nothing if either id is not in the network.
+     */
+    public void addFriend(int primaryUser, int friend) {
+        setFriend(primaryUser, friend, true);
+    }
+
+    public void removeFriend(Profile primaryUser, Profile friend) {
+        removeFriend(indexOf(primaryUser), indexOf(friend));
+    }
+
+    /**
+     * Remove the friendship between two vertex ids, if there is one.
+     */
+    public void removeFriend(int primaryUser, int friend) {
+        setFriend(primaryUser, friend, false);
+    }
+
+    private void setFriend(int i, int j, boolean areFriends) {
+        structureLock.readLock().lock();
+        try {
+            State s = state;
+            if (!isVertex(s, i) || !isVertex(s, j) || i == j) {
+                return;
+            }
+            // Always lock the lower stripe first so two writers cannot deadlock
+            ReentrantLock first = rowLocks[Math.min(i % STRIPES, j % STRIPES)];
+            ReentrantLock second = rowLocks[Math.max(i % STRIPES, j % STRIPES)];
+            first.lock();
+            second.lock();
+            try {
+                setBit(s.rows[i], j, areFriends);
+                setBit(s.rows[j], i, areFriends);
+            } finally {
+                second.unlock();
+                first.unlock();
+            }
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Every writer of a row holds that row's stripe lock, so a plain read-modify-write cannot lose an
+     * update; the volatile set() publishes the new word to lock-free readers.
+     */
+    private static void setBit(AtomicLongArray row, int col, boolean value) {
+        int w = col >>> 6;
+        long bit = 1L << col;
+        row.set(w, value ? row.get(w) | bit : row.get(w) & ~bit);
+    }
+
+    private static boolean isVertex(State s, int id) {
+        return id >= 0 && id < s.size;
+    }
+}
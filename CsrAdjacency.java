@@ -0,0 +1,183 @@
+package src.graph;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Read-only compressed sparse row (CSR) snapshot of another Adjacency.
+ *
+ * The neighbors of vertex i are targets[offsets[i]] to targets[offsets[i + 1] - 1], sorted. Two flat
+ * int arrays keep the whole graph in 4 * (n + 1 + edges) bytes with no per-row object overhead, which
+ * makes it the fastest layout to scan for read-heavy workloads. Any attempt to modify it throws
+ * UnsupportedOperationException.
+ */
+public class CsrAdjacency implements Adjacency {
+    private final int[] offsets;
+    private final int[] targets;
+
+    /**
+     * Copy the current edges of source into a new CSR snapshot.
+     *
+     * @param source adjacency to freeze, left unchanged
+     */
+    public CsrAdjacency(Adjacency source) {
+        int n = source.size();
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + source.degree(i);
+        }
+        int[] targets = new int[offsets[n]];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < n; i++) {
+            int row = i;
+            source.forEachNeighbor(i, j -> targets[next[row]++] = j);
+        }
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    @Override
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    public int capacity() {
+        return size();
+    }
+
+    @Override
+    public void reserve(int minCapacity) {
+        throw new UnsupportedOperationException("CsrAdjacency is read-only");
+    }
+
+    @Override
+    public void grow(int newSize) {
+        throw new UnsupportedOperationException("CsrAdjacency is read-only");
+    }
+
+    @Override
+    public void truncate(int newSize) {
+        throw new UnsupportedOperationException("CsrAdjacency is read-only");
+    }
+
+    @Override
+    public boolean contains(int row, int col) {
+        return Arrays.binarySearch(targets, offsets[row], offsets[row + 1], col) >= 0;
+    }
+
+    @Override
+    public boolean add(int row, int col) {
+        throw new UnsupportedOperationException("CsrAdjacency is read-only");
+    }
+
+    @Override
+    public boolean remove(int row, int col) {
+        throw new UnsupportedOperationException("CsrAdjacency is read-only");
+    }
+
+    @Override
+    public int degree(int row) {
+        return offsets[row + 1] - offsets[row];
+    }
+
+    @Override
+    public void forEachNeighbor(int row, IntConsumer action) {
+        int end = offsets[row + 1];
+        for (int k = offsets[row]; k < end; k++) {
+            action.accept(targets[k]);
+        }
+    }
+
+    @Override
+    public boolean anyNeighbor(int row, IntPredicate predicate) {
+        int end = offsets[row + 1];
+        for (int k = offsets[row]; k < end; k++) {
+            if (predicate.test(targets[k])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachCommonNeighbor(int a, int b, IntConsumer action) {
+        int i = offsets[a];
+        int j = offsets[b];
+        int endA = offsets[a + 1];
+        int endB = offsets[b + 1];
+        // Merge the two sorted rows
+        while (i < endA && j < endB) {
+            if (targets[i] < targets[j]) {
+                i++;
+            } else if (targets[i] > targets[j]) {
+                j++;
+            } else {
+                action.accept(targets[i]);
+                i++;
+                j++;
+            }
+        }
+    }
+
+    @Override
+    public int countCommonNeighbors(int a, int b) {
+        int i = offsets[a];
+        int j = offsets[b];
+        int endA = offsets[a + 1];
+        int endB = offsets[b + 1];
+        int count = 0;
+        while (i < endA && j < endB) {
+            int x = targets[i];
+            int y = targets[j];
+            if (x <= y) {
+                i++;
+            }
+            if (y <= x) {
+                j++;
+            }
+            if (x == y) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int nextNeighbor(int row, int from) {
+        int end = offsets[row + 1];
+        int pos = Arrays.binarySearch(targets, offsets[row], end, from);
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
+        return pos < end ? targets[pos] : -1;
+    }
+
+    @Override
+    public void forEachEdge(IntIntConsumer action) {
+        int n = size();
+        for (int u = 0; u < n; u++) {
+            int end = offsets[u + 1];
+            int k = Arrays.binarySearch(targets, offsets[u], end, u);
+            for (k = k >= 0 ? k + 1 : -k - 1; k < end; k++) {
+                action.accept(u, targets[k]);
+            }
+        }
+    }
+
+    @Override
+    public Adjacency snapshot() {
+        return this;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public long bytesUsed() {
+        return 16 + 4L * offsets.length + 16 + 4L * targets.length;
+    }
+}
@@ -0,0 +1,177 @@
+package src.graph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streaming reader for comma-separated files, one record at a time.
+ *
+ * The file is read through a FileChannel in 1 MB blocks and parsed byte by byte into one reusable
+ * record buffer, so reading a record allocates nothing; only the fields asked for with field() become
+ * Strings. Fields may be quoted with double quotes, with "" for a quote inside, and lines may end in
+ * \n or \r\n. Blank lines are skipped. Input must be UTF-8.
+ */
+final class CsvReader implements Closeable {
+    private final FileChannel channel;
+    private final byte[] block = new byte[1 << 20];
+    private final ByteBuffer blockBuffer = ByteBuffer.wrap(block);
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    // Bytes of the current record's fields, back to back, and where each field ends
+    private byte[] record = new byte[256];
+    private int[] fieldEnds = new int[8];
+    private int fields;
+
+    CsvReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return false at the end of the file
+     */
+    boolean next() throws IOException {
+        int length = 0;
+        fields = 0;
+        boolean quoted = false;
+        boolean any = false;
+        while (true) {
+            int b = read();
+            if (b < 0) {
+                if (!any) {
+                    return false;
+                }
+                break;
+            }
+            if (quoted) {
+                if (b == '"') {
+                    if (peek() == '"') {
+                        read();
+                    } else {
+                        quoted = false;
+                        continue;
+                    }
+                }
+            } else if (b == ',') {
+                endField(length);
+                any = true;
+                continue;
+            } else if (b == '\n') {
+                if (!any && length == 0) {
+                    continue;
+                }
+                break;
+            } else if (b == '\r' && peek() == '\n') {
+                continue;
+            } else if (b == '"' && length == fieldStart()) {
+                quoted = true;
+                any = true;
+                continue;
+            }
+            if (length == record.length) {
+                record = Arrays.copyOf(record, length * 2);
+            }
+            record[length++] = (byte) b;
+            any = true;
+        }
+        endField(length);
+        return true;
+    }
+
+    /**
+     * Number of fields in the current record.
+     */
+    int fields() {
+        return fields;
+    }
+
+    /**
+     * Field i of the current record, or null if the record has fewer fields.
+     */
+    String field(int i) {
+        if (i >= fields) {
+            return null;
+        }
+        int start = i == 0 ? 0 : fieldEnds[i - 1];
+        return new String(record, start, fieldEnds[i] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Hash of the bytes b of field i, computed as h = 31 * h + b over the signed byte values.
+     */
+    int fieldHash(int i) {
+        int start = i == 0 ? 0 : fieldEnds[i - 1];
+        int h = 0;
+        for (int k = start; k < fieldEnds[i]; k++) {
+            h = 31 * h + record[k];
+        }
+        return h;
+    }
+
+    /**
+     * Whether field i consists of exactly the bytes bytes[offset] to bytes[offset + length - 1].
+     */
+    boolean fieldEquals(int i, byte[] bytes, int offset, int length) {
+        int start = i == 0 ? 0 : fieldEnds[i - 1];
+        int end = fieldEnds[i];
+        return end - start == length
+            && Arrays.equals(record, start, end, bytes, offset, offset + length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int fieldStart() {
+        return fields == 0 ? 0 : fieldEnds[fields - 1];
+    }
+
+    private void endField(int length) {
+        if (fields == fieldEnds.length) {
+            fieldEnds = Arrays.copyOf(fieldEnds, fields * 2);
+        }
+        fieldEnds[fields++] = length;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return block[position++] & 0xff;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return block[position] & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        blockBuffer.clear();
+        int n;
+        do {
+            n = channel.read(blockBuffer);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+}
@@ -0,0 +1,338 @@
+package src.graph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Command-line import and export of networks as CSV files.
+ *
+ * Usage:
+ * <pre>
+ *   java src.graph.CsvTool import profiles.csv edges.csv network.snet [sparse|bit|int]
+ *   java src.graph.CsvTool export network.snet profiles.csv edges.csv
+ * </pre>
+ * Profile files have one username,name,imageUrl row per profile (imageUrl may be empty) and edge files
+ * one user1,user2 row per friendship. A first row that is the header "username,..." or "user1,..." is
+ * skipped. Import streams both files and adds the rows in batches through addProfiles() and
+ * addFriends(), so only one batch of rows is held in memory at a time, and saves the result as a
+ * snapshot. Each step reports its row rate and the peak heap use.
+ */
+public class CsvTool {
+    // Rows handed to addProfiles()/addFriends() at once
+    private static final int BATCH_ROWS = 1 << 20;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 4 && args[0].equals("import")) {
+            String backend = args.length > 4 ? args[4] : "sparse";
+            SocialNetwork network = new SocialNetwork(new ArrayList<>(), adjacency(backend));
+            report("profiles", () -> importProfiles(network, Paths.get(args[1])));
+            report("edges", () -> {
+                SocialNetwork.BatchResult result = importEdges(network, Paths.get(args[2]));
+                System.out.println(result);
+                return (long) result.added + result.duplicates + result.rejected;
+            });
+            report("snapshot", () -> {
+                network.save(Paths.get(args[3]));
+                return network.size() + network.friendshipCount();
+            });
+        } else if (args.length == 4 && args[0].equals("export")) {
+            SocialNetwork network = SocialNetwork.load(Paths.get(args[1]));
+            report("profiles", () -> exportProfiles(network, Paths.get(args[2])));
+            report("edges", () -> exportEdges(network, Paths.get(args[3])));
+        } else {
+            System.err.println("Usage: java src.graph.CsvTool import profiles.csv edges.csv network.snet [sparse|bit|int]");
+            System.err.println("       java src.graph.CsvTool export network.snet profiles.csv edges.csv");
+            System.exit(2);
+        }
+    }
+
+    private static Adjacency adjacency(String backend) {
+        switch (backend) {
+            case "sparse":
+                return new SparseAdjacency();
+            case "bit":
+                return new BitMatrixAdjacency();
+            case "int":
+                return new IntMatrixAdjacency();
+            default:
+                throw new IllegalArgumentException("Unknown backend '" + backend + "', expected sparse, bit or int");
+        }
+    }
+
+    /**
+     * Add every profile row of a username,name,imageUrl file to network.
+     *
+     * Rows without a username or name, and rows whose username is already taken, are skipped.
+     *
+     * @return number of rows read
+     */
+    public static long importProfiles(SocialNetwork network, Path file) throws IOException {
+        long rows = 0;
+        ArrayList<Profile> batch = new ArrayList<>();
+        try (CsvReader in = new CsvReader(file)) {
+            while (in.next()) {
+                String username = in.field(0);
+                if (rows++ == 0 && "username".equals(username)) {
+                    continue;
+                }
+                String name = in.field(1);
+                String image = in.field(2);
+                if (username == null || username.isEmpty() || name == null) {
+                    continue;
+                }
+                batch.add(new Profile(username, name, image == null || image.isEmpty() ? null : image));
+                if (batch.size() == BATCH_ROWS) {
+                    network.addProfiles(batch);
+                    batch.clear();
+                }
+            }
+        }
+        network.addProfiles(batch);
+        return rows;
+    }
+
+    /**
+     * Add the friendship of every user1,user2 row of file to network, by username.
+     *
+     * @return the added, duplicate and rejected counts summed over all batches; rows naming an unknown
+     *         username count as rejected
+     */
+    public static SocialNetwork.BatchResult importEdges(SocialNetwork network, Path file) throws IOException {
+        UsernameTable usernames = new UsernameTable(network);
+        int[] us = new int[BATCH_ROWS];
+        int[] vs = new int[BATCH_ROWS];
+        int count = 0;
+        long rows = 0;
+        int added = 0;
+        int duplicates = 0;
+        int rejected = 0;
+        try (CsvReader in = new CsvReader(file)) {
+            while (in.next()) {
+                if (rows++ == 0 && "user1".equals(in.field(0))) {
+                    continue;
+                }
+                us[count] = usernames.indexOf(in, 0);
+                vs[count] = in.fields() > 1 ? usernames.indexOf(in, 1) : -1;
+                if (++count == BATCH_ROWS) {
+                    SocialNetwork.BatchResult result = network.addFriends(us, vs);
+                    added += result.added;
+                    duplicates += result.duplicates;
+                    rejected += result.rejected;
+                    count = 0;
+                }
+            }
+        }
+        SocialNetwork.BatchResult result = network.addFriends(Arrays.copyOf(us, count), Arrays.copyOf(vs, count));
+        return new SocialNetwork.BatchResult(added + result.added, duplicates + result.duplicates,
+            rejected + result.rejected);
+    }
+
+    /**
+     * Write a username,name,imageUrl row for every profile of network, with a header row.
+     *
+     * @return number of profiles written
+     */
+    public static long exportProfiles(SocialNetwork network, Path file) throws IOException {
+        try (CsvWriter out = new CsvWriter(file)) {
+            out.row("username", "name", "imageUrl");
+            for (int i = 0; i < network.size(); i++) {
+                Profile p = network.getProfile(i);
+                String image = p.getProfileImage();
+                out.row(p.getUsername(), p.getName(), image == null ? "" : image);
+            }
+        }
+        return network.size();
+    }
+
+    /**
+     * Write a user1,user2 row for every friendship of network, with a header row.
+     *
+     * @return number of friendships written
+     */
+    public static long exportEdges(SocialNetwork network, Path file) throws IOException {
+        try (CsvWriter out = new CsvWriter(file)) {
+            out.row("user1", "user2");
+            network.forEachEdge((u, v) -> out.row(network.getProfile(u).getUsername(),
+                network.getProfile(v).getUsername()));
+        }
+        return network.friendshipCount();
+    }
+
+    /*
+     * Username to vertex id lookup keyed by UTF-8 bytes, so edge rows are resolved straight from the
+     * reader's buffer. Open addressing over flat arrays costs one or two cache misses per lookup, where
+     * the network's HashMap<String, Integer> needs a new String plus a miss for the entry, the key, its
+     * bytes and the Integer.
+     */
+    private static final class UsernameTable {
+        private final int[] slots;
+        private final int[] hashes;
+        private final byte[] bytes;
+        private final int[] offsets;
+
+        UsernameTable(SocialNetwork network) {
+            int n = network.size();
+            byte[][] names = new byte[n][];
+            offsets = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                names[i] = network.getProfile(i).getUsername().getBytes(StandardCharsets.UTF_8);
+                offsets[i + 1] = offsets[i] + names[i].length;
+            }
+            bytes = new byte[offsets[n]];
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(names[i], 0, bytes, offsets[i], names[i].length);
+            }
+            // Power of two at least twice n, so probe sequences stay short
+            slots = new int[Integer.highestOneBit(Math.max(1, n) * 4 - 1)];
+            hashes = new int[slots.length];
+            Arrays.fill(slots, -1);
+            for (int i = 0; i < n; i++) {
+                int h = hash(names[i]);
+                int slot = mix(h) & (slots.length - 1);
+                while (slots[slot] >= 0) {
+                    slot = (slot + 1) & (slots.length - 1);
+                }
+                slots[slot] = i;
+                hashes[slot] = h;
+            }
+        }
+
+        // Vertex id of the username in field i of the reader's current record, or -1
+        int indexOf(CsvReader in, int field) {
+            int h = in.fieldHash(field);
+            int slot = mix(h) & (slots.length - 1);
+            for (int id = slots[slot]; id >= 0; id = slots[slot]) {
+                if (hashes[slot] == h && in.fieldEquals(field, bytes, offsets[id], offsets[id + 1] - offsets[id])) {
+                    return id;
+                }
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            return -1;
+        }
+
+        private static int hash(byte[] b) {
+            int h = 0;
+            for (byte x : b) {
+                h = 31 * h + x;
+            }
+            return h;
+        }
+
+        // Spread the bits of h so that similar usernames do not land in neighboring slots
+        private static int mix(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    private interface Step {
+        long run() throws IOException;
+    }
+
+    private static void report(String name, Step step) throws IOException {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long start = System.nanoTime();
+        long rows = step.run();
+        double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("%-10s %,14d rows %10.2f s %,14.0f rows/s   peak heap %,8.1f MB%n", name, rows, seconds,
+            rows / seconds, peak / 1e6);
+    }
+
+    // Buffered CSV output to a FileChannel, quoting fields that need it. Errors surface on close().
+    private static final class CsvWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        private IOException failure;
+
+        CsvWriter(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void row(String... fields) {
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    put((byte) ',');
+                }
+                field(fields[i]);
+            }
+            put((byte) '\n');
+        }
+
+        private void field(String s) {
+            boolean quote = false;
+            for (int i = 0; i < s.length() && !quote; i++) {
+                char c = s.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (quote) {
+                put((byte) '"');
+            }
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    if (c == '"') {
+                        put((byte) '"');
+                    }
+                    put((byte) c);
+                } else {
+                    // Rare: encode the rest of the string in one go
+                    for (byte b : s.substring(i).replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8)) {
+                        put(b);
+                    }
+                    break;
+                }
+            }
+            if (quote) {
+                put((byte) '"');
+            }
+        }
+
+        private void put(byte b) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put(b);
+        }
+
+        private void flush() {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining() && failure == null) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            channel.close();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -1,28 +1,34 @@
 package src.graph;
 
 import java.awt.*;
+import java.io.IOException;
 import java.util.ArrayList;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
 
 /**
  * Swing-based driver for the Social Network lab (CS112).
- * Uses existing NetworkGraph methods: constructor, addFriend, searchFriend, allFriends.
- * Manages its own profile list and rebuilds the graph when profiles are added.
+ * Uses existing SocialNetwork methods: constructor, addFriend, searchFriend, friends.
+ * Redraws the graph when profiles are added.
  */
 public class Driver extends JFrame {
-    private ArrayList<Profile> profiles;
-    private NetworkGraph network;
-    private DefaultComboBoxModel<String> profileModel;
-    private Runnable updateAddModels;
-    private Runnable updateSearchModels;
+    private SocialNetwork network;
+    // Username and name prefixes for the typeahead fields, one model per field
+    private PrefixIndex prefixIndex;
+    private final ArrayList<ProfileSearchModel> searchModels = new ArrayList<>();
     private GraphVisualizationPanel graphViz;
+    private final ProfileImageCache imageCache = new ProfileImageCache(512);
+    // Friends shown at a time; long friend lists are read page by page with SocialNetwork.friends()
+    private static final int FRIEND_PAGE_SIZE = 50;
+    // Matches listed by a typeahead field; type more of the name to narrow them down
+    private static final int TYPEAHEAD_LIMIT = 100;
 
     public Driver() {
         super("Social Network Driver");
-        // Driver-managed profile list
-        profiles = new ArrayList<>();
-        network = new NetworkGraph(profiles);
-        profileModel = new DefaultComboBoxModel<>();
+        network = new SocialNetwork(new ArrayList<>());
+        prefixIndex = new PrefixIndex(network);
 
         initUI();
         setDefaultCloseOperation(EXIT_ON_CLOSE);
@@ -54,17 +60,18 @@ public class Driver extends JFrame {
                 JOptionPane.showMessageDialog(this, "Username and Full Name are required.", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
+            if (network.getProfile(u) != null) {
+                JOptionPane.showMessageDialog(this, "Username '" + u + "' is already taken.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             Profile p = new Profile(u, n, imgUrl.isEmpty() ? null : imgUrl);
-            profiles.add(p);
-            profileModel.addElement(u);
             // Add profile to network (preserves existing friendships)
             network.addProfile(p);
-            // Update all dropdown models
-            if (updateAddModels != null) updateAddModels.run();
-            if (updateSearchModels != null) updateSearchModels.run();
+            // The prefix index follows the network; the typeahead fields only need to requery
+            refreshSearchModels();
             // Update graph visualization
             if (graphViz != null) {
-                graphViz.updateGraph(profiles, network);
+                graphViz.updateGraph(network);
                 graphViz.repaint();
             }
             JOptionPane.showMessageDialog(this, "Profile '" + u + "' created.");
@@ -78,76 +85,74 @@ public class Driver extends JFrame {
         // --- Add Friend Tab ---
         JPanel addPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         addPanel.add(new JLabel("User 1:"));
-        DefaultComboBoxModel<String> addModel1 = new DefaultComboBoxModel<>();
-        JComboBox<String> addPrimary = new JComboBox<>(addModel1);
+        JComboBox<String> addPrimary = typeaheadCombo();
         addPanel.add(addPrimary);
         addPanel.add(new JLabel("User 2:"));
-        DefaultComboBoxModel<String> addModel2 = new DefaultComboBoxModel<>();
-        JComboBox<String> addSecondary = new JComboBox<>(addModel2);
+        JComboBox<String> addSecondary = typeaheadCombo();
         addPanel.add(addSecondary);
         
-        // Update both models when profiles change
-        Runnable updateAddModels = () -> {
-            addModel1.removeAllElements();
-            addModel2.removeAllElements();
-            for (Profile p : profiles) {
-                addModel1.addElement(p.getUsername());
-                addModel2.addElement(p.getUsername());
-            }
-        };
-        
         JButton addBtn = new JButton("Add Friend");
         addBtn.addActionListener(e -> {
-            String u1 = (String) addPrimary.getSelectedItem();
-            String u2 = (String) addSecondary.getSelectedItem();
-            if (u1 == null || u2 == null || u1.equals(u2)) {
+            String u1 = typedUsername(addPrimary);
+            String u2 = typedUsername(addSecondary);
+            Profile p1 = findProfile(u1);
+            Profile p2 = findProfile(u2);
+            if (p1 == null || p2 == null || p1 == p2) {
                 JOptionPane.showMessageDialog(this, "Select two different existing users.", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
-            Profile p1 = findProfile(u1);
-            Profile p2 = findProfile(u2);
             network.addFriend(p1, p2);
             // Update graph visualization
             if (graphViz != null) {
-                graphViz.updateGraph(profiles, network);
+                graphViz.updateGraph(network);
                 graphViz.repaint();
             }
             JOptionPane.showMessageDialog(this, u1 + " and " + u2 + " are now friends.");
         });
         addPanel.add(addBtn);
+
+        JButton removeBtn = new JButton("Remove Friend");
+        removeBtn.addActionListener(e -> {
+            String u1 = typedUsername(addPrimary);
+            String u2 = typedUsername(addSecondary);
+            Profile p1 = findProfile(u1);
+            Profile p2 = findProfile(u2);
+            if (p1 == null || p2 == null || p1 == p2) {
+                JOptionPane.showMessageDialog(this, "Select two different existing users.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            if (!network.searchFriend(p1, p2)) {
+                JOptionPane.showMessageDialog(this, u1 + " and " + u2 + " are not friends.");
+                return;
+            }
+            network.removeFriend(p1, p2);
+            // Update graph visualization
+            if (graphViz != null) {
+                graphViz.updateGraph(network);
+                graphViz.repaint();
+            }
+            JOptionPane.showMessageDialog(this, u1 + " and " + u2 + " are no longer friends.");
+        });
+        addPanel.add(removeBtn);
         tabs.addTab("Add Friend", addPanel);
 
         // --- Search Friendship Tab ---
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         searchPanel.add(new JLabel("User 1:"));
-        DefaultComboBoxModel<String> searchModel1 = new DefaultComboBoxModel<>();
-        JComboBox<String> searchPrimary = new JComboBox<>(searchModel1);
+        JComboBox<String> searchPrimary = typeaheadCombo();
         searchPanel.add(searchPrimary);
         searchPanel.add(new JLabel("User 2:"));
-        DefaultComboBoxModel<String> searchModel2 = new DefaultComboBoxModel<>();
-        JComboBox<String> searchSecondary = new JComboBox<>(searchModel2);
+        JComboBox<String> searchSecondary = typeaheadCombo();
         searchPanel.add(searchSecondary);
         
-        // Update both models when profiles change
-        Runnable updateSearchModels = () -> {
-            searchModel1.removeAllElements();
-            searchModel2.removeAllElements();
-            for (Profile p : profiles) {
-                searchModel1.addElement(p.getUsername());
-                searchModel2.addElement(p.getUsername());
-            }
-        };
-        
         JButton searchBtn = new JButton("Check Friendship");
         searchBtn.addActionListener(e -> {
-            String u1 = (String) searchPrimary.getSelectedItem();
-            String u2 = (String) searchSecondary.getSelectedItem();
-            if (u1 == null || u2 == null) {
+            Profile p1 = findProfile(typedUsername(searchPrimary));
+            Profile p2 = findProfile(typedUsername(searchSecondary));
+            if (p1 == null || p2 == null) {
                 JOptionPane.showMessageDialog(this, "Select both users.", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
-            Profile p1 = findProfile(u1);
-            Profile p2 = findProfile(u2);
             boolean friends = network.searchFriend(p1, p2);
             String msg = friends ? "They are friends." : "They are not friends.";
             JOptionPane.showMessageDialog(this, msg);
@@ -158,29 +163,48 @@ public class Driver extends JFrame {
         // --- List Friends Tab ---
         JPanel listPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         listPanel.add(new JLabel("Username:"));
-        JComboBox<String> listCombo = new JComboBox<>(profileModel);
+        JComboBox<String> listCombo = typeaheadCombo();
         listPanel.add(listCombo);
         JButton listBtn = new JButton("List Friends");
         listBtn.addActionListener(e -> {
-            String u = (String) listCombo.getSelectedItem();
-            if (u == null) {
+            String u = typedUsername(listCombo);
+            Profile p = findProfile(u);
+            if (p == null) {
                 JOptionPane.showMessageDialog(this, "Select a user.", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
-            Profile p = findProfile(u);
-            java.util.List<Profile> friends = network.allFriends(p);
-            StringBuilder sb = new StringBuilder("Friends of " + u + ":\n\n");
-            for (Profile f : friends) {
-                sb.append("• ").append(f.getUsername()).append(" (").append(f.getName()).append(")");
-                if (f.getProfileImage() != null && !f.getProfileImage().isEmpty()) {
-                    sb.append(" [Has profile image]");
+            int total = network.degree(p);
+            int shown = 0;
+            int cursor = SocialNetwork.FriendPage.START;
+            while (true) {
+                SocialNetwork.FriendPage page = network.friends(p, cursor, FRIEND_PAGE_SIZE);
+                String range = total > FRIEND_PAGE_SIZE
+                    ? " (" + (shown + 1) + "-" + (shown + page.friends.size()) + " of " + total + ")"
+                    : "";
+                StringBuilder sb = new StringBuilder("Friends of " + u + range + ":\n\n");
+                for (Profile f : page.friends) {
+                    sb.append("• ").append(f.getUsername()).append(" (").append(f.getName()).append(")");
+                    if (f.getProfileImage() != null && !f.getProfileImage().isEmpty()) {
+                        sb.append(" [Has profile image]");
+                    }
+                    sb.append("\n");
                 }
-                sb.append("\n");
-            }
-            if (friends.isEmpty()) {
-                sb.append("No friends found.");
+                if (page.friends.isEmpty() && shown == 0) {
+                    sb.append("No friends found.");
+                }
+                if (!page.hasMore()) {
+                    JOptionPane.showMessageDialog(this, sb.toString());
+                    break;
+                }
+                Object[] options = {"Next Page", "Close"};
+                int choice = JOptionPane.showOptionDialog(this, sb.toString(), "Friends", JOptionPane.DEFAULT_OPTION,
+                    JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+                if (choice != 0) {
+                    break;
+                }
+                shown += page.friends.size();
+                cursor = page.nextCursor;
             }
-            JOptionPane.showMessageDialog(this, sb.toString());
         });
         listPanel.add(listBtn);
         tabs.addTab("List Friends", listPanel);
@@ -188,14 +212,14 @@ public class Driver extends JFrame {
         // --- Edit Profile Image Tab ---
         JPanel editImagePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         editImagePanel.add(new JLabel("Select User:"));
-        JComboBox<String> editImageCombo = new JComboBox<>(profileModel);
+        JComboBox<String> editImageCombo = typeaheadCombo();
         editImagePanel.add(editImageCombo);
         editImagePanel.add(new JLabel("New Image URL:"));
         JTextField editImageField = new JTextField(25);
         editImagePanel.add(editImageField);
         JButton editImageBtn = new JButton("Update Image");
         editImageBtn.addActionListener(e -> {
-            String username = (String) editImageCombo.getSelectedItem();
+            String username = typedUsername(editImageCombo);
             String newImageUrl = editImageField.getText().trim();
             if (username == null) {
                 JOptionPane.showMessageDialog(this, "Select a user.", "Error", JOptionPane.ERROR_MESSAGE);
@@ -216,7 +240,7 @@ public class Driver extends JFrame {
 
         // --- Profile Viewer Tab ---
         JPanel viewerPanel = new JPanel(new BorderLayout());
-        JComboBox<String> viewerCombo = new JComboBox<>(profileModel);
+        JComboBox<String> viewerCombo = typeaheadCombo();
         JPanel viewerTopPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         viewerTopPanel.add(new JLabel("Select User:"));
         viewerTopPanel.add(viewerCombo);
@@ -235,7 +259,7 @@ public class Driver extends JFrame {
         viewerPanel.add(scrollPane, BorderLayout.SOUTH);
         
         viewerCombo.addActionListener(e -> {
-            String username = (String) viewerCombo.getSelectedItem();
+            String username = typedUsername(viewerCombo);
             if (username != null) {
                 Profile p = findProfile(username);
                 if (p != null) {
@@ -245,69 +269,43 @@ public class Driver extends JFrame {
                     info.append("Full Name: ").append(p.getName()).append("\n");
                     info.append("Profile Image: ").append(p.getProfileImage() != null ? p.getProfileImage() : "None").append("\n");
                     
-                    // Safely get friends list
+                    // Safely get the first page of the friends list
                     java.util.List<Profile> friends = new ArrayList<>();
                     try {
-                        friends = network.allFriends(p);
+                        friends = network.friends(p, SocialNetwork.FriendPage.START, FRIEND_PAGE_SIZE).friends;
                     } catch (Exception ex) {
                         info.append("Friends: Error loading friends\n");
                     }
                     
-                    info.append("Friends: ").append(friends.size()).append("\n");
+                    int friendCount = network.degree(p);
+                    info.append("Friends: ").append(friendCount).append("\n");
                     if (!friends.isEmpty()) {
                         info.append("Friend List: ");
                         for (int i = 0; i < friends.size(); i++) {
                             if (i > 0) info.append(", ");
                             info.append(friends.get(i).getUsername());
                         }
+                        if (friendCount > friends.size()) {
+                            info.append(" and ").append(friendCount - friends.size()).append(" more (see List Friends)");
+                        }
                     }
                     
                     infoArea.setText(info.toString());
                     
-                    // Load and display image
+                    // Load and display image in the background, showing a placeholder until it arrives
                     String imageUrl = p.getProfileImage();
                     if (imageUrl != null && !imageUrl.isEmpty()) {
-                        try {
-                            java.net.URL url = new java.net.URL(imageUrl);
-                            java.awt.image.BufferedImage originalImage = javax.imageio.ImageIO.read(url);
-                            if (originalImage != null) {
-                                int maxSize = 300;
-                                int width = originalImage.getWidth();
-                                int height = originalImage.getHeight();
-                                double scale = Math.min((double) maxSize / width, (double) maxSize / height);
-                                int newWidth = (int) (width * scale);
-                                int newHeight = (int) (height * scale);
-                                
-                                int highResWidth = newWidth * 2;
-                                int highResHeight = newHeight * 2;
-                                
-                                java.awt.image.BufferedImage highResImage = new java.awt.image.BufferedImage(highResWidth, highResHeight, java.awt.image.BufferedImage.TYPE_INT_ARGB);
-                                java.awt.Graphics2D highResG2d = highResImage.createGraphics();
-                                highResG2d.setRenderingHint(java.awt.RenderingHints.KEY_INTERPOLATION, java.awt.RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-                                highResG2d.setRenderingHint(java.awt.RenderingHints.KEY_RENDERING, java.awt.RenderingHints.VALUE_RENDER_QUALITY);
-                                highResG2d.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, java.awt.RenderingHints.VALUE_ANTIALIAS_ON);
-                                highResG2d.setRenderingHint(java.awt.RenderingHints.KEY_ALPHA_INTERPOLATION, java.awt.RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
-                                highResG2d.setRenderingHint(java.awt.RenderingHints.KEY_COLOR_RENDERING, java.awt.RenderingHints.VALUE_COLOR_RENDER_QUALITY);
-                                highResG2d.drawImage(originalImage, 0, 0, highResWidth, highResHeight, null);
-                                highResG2d.dispose();
-                                
-                                // Scale down to final size
-                                java.awt.image.BufferedImage resizedImage = new java.awt.image.BufferedImage(newWidth, newHeight, java.awt.image.BufferedImage.TYPE_INT_ARGB);
-                                java.awt.Graphics2D g2d = resizedImage.createGraphics();
-                                g2d.setRenderingHint(java.awt.RenderingHints.KEY_INTERPOLATION, java.awt.RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-                                g2d.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, java.awt.RenderingHints.VALUE_ANTIALIAS_ON);
-                                g2d.drawImage(highResImage, 0, 0, newWidth, newHeight, null);
-                                g2d.dispose();
-                                
-                                imageLabel.setIcon(new ImageIcon(resizedImage));
-                                imageLabel.setText("");
-                            } else {
-                                imageLabel.setIcon(null);
-                                imageLabel.setText("Failed to load image");
+                        java.awt.image.BufferedImage image = imageCache.get(imageUrl, ProfileImageCache.Shape.FIT, 300, loaded -> {
+                            // Ignore images that arrive after the user picked someone else
+                            if (username.equals(viewerCombo.getSelectedItem())) {
+                                showProfileImage(imageLabel, loaded);
                             }
-                        } catch (Exception ex) {
+                        });
+                        if (image != null || imageCache.hasFailed(imageUrl, ProfileImageCache.Shape.FIT, 300)) {
+                            showProfileImage(imageLabel, image);
+                        } else {
                             imageLabel.setIcon(null);
-                            imageLabel.setText("Failed to load image: " + ex.getMessage());
+                            imageLabel.setText("Loading image...");
                         }
                     } else {
                         imageLabel.setIcon(null);
@@ -321,35 +319,141 @@ public class Driver extends JFrame {
 
         // --- Graph Visualization Tab ---
         JPanel graphPanel = new JPanel(new BorderLayout());
-        graphViz = new GraphVisualizationPanel();
+        graphViz = new GraphVisualizationPanel(imageCache);
         graphPanel.add(graphViz, BorderLayout.CENTER);
         
         JButton refreshBtn = new JButton("Refresh Graph");
         refreshBtn.addActionListener(e -> {
-            graphViz.updateGraph(profiles, network);
+            graphViz.updateGraph(network);
             graphViz.repaint();
         });
         
+        JButton saveBtn = new JButton("Save Network...");
+        saveBtn.addActionListener(e -> saveNetwork());
+        JButton openBtn = new JButton("Open Network...");
+        openBtn.addActionListener(e -> openNetwork());
+
         JPanel buttonPanel = new JPanel();
         buttonPanel.add(refreshBtn);
+        buttonPanel.add(saveBtn);
+        buttonPanel.add(openBtn);
         graphPanel.add(buttonPanel, BorderLayout.SOUTH);
         tabs.addTab("Graph View", graphPanel);
 
         add(tabs, BorderLayout.CENTER);
-        
-        // Store update functions to call when profiles are added
-        this.updateAddModels = updateAddModels;
-        this.updateSearchModels = updateSearchModels;
     }
 
-    /** Helper: find Profile object by username from driver-managed list */
-    private Profile findProfile(String username) {
-        for (Profile p : profiles) {
-            if (p.getUsername().equals(username)) {
-                return p;
+    /** Helper: editable combo box whose popup lists the profiles matching what has been typed so far */
+    private JComboBox<String> typeaheadCombo() {
+        ProfileSearchModel model = new ProfileSearchModel(prefixIndex, TYPEAHEAD_LIMIT);
+        searchModels.add(model);
+        JComboBox<String> combo = new JComboBox<>(model);
+        combo.setEditable(true);
+        // Fixed width, so Swing does not measure every match to size the combo box
+        combo.setPrototypeDisplayValue("wwwwwwwwwwwwwwww");
+        combo.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected,
+                                                          boolean cellHasFocus) {
+                // Show the full name too, since the match may have been on the name
+                Profile p = value == null ? null : findProfile(value.toString());
+                Object text = p != null ? p.getUsername() + " (" + p.getName() + ")" : value;
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        JTextComponent editor = (JTextComponent) combo.getEditor().getEditorComponent();
+        editor.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+
+            // Later, because the combo box must not be changed while its editor notifies
+            private void textChanged() {
+                SwingUtilities.invokeLater(() -> {
+                    String text = editor.getText().trim();
+                    model.setPrefix(text);
+                    // Picking from the popup also sets the text; only reopen it while typing
+                    if (editor.isFocusOwner() && combo.isShowing() && !text.equals(combo.getSelectedItem())) {
+                        combo.showPopup();
+                    }
+                });
             }
+        });
+        return combo;
+    }
+
+    /** Helper: the username typed or picked in a typeahead combo box, or null if it is empty */
+    private static String typedUsername(JComboBox<String> combo) {
+        Object item = combo.getEditor().getItem();
+        String username = item == null ? "" : item.toString().trim();
+        return username.isEmpty() ? null : username;
+    }
+
+    /** Helper: make the typeahead fields query the prefix index again after profiles changed */
+    private void refreshSearchModels() {
+        for (ProfileSearchModel model : searchModels) {
+            model.invalidate();
+        }
+    }
+
+    /** Helper: show a loaded profile image, or a failure message if it is null */
+    private static void showProfileImage(JLabel imageLabel, java.awt.image.BufferedImage image) {
+        if (image != null) {
+            imageLabel.setIcon(new ImageIcon(image));
+            imageLabel.setText("");
+        } else {
+            imageLabel.setIcon(null);
+            imageLabel.setText("Failed to load image");
+        }
+    }
+
+    /** Save the network to a snapshot file chosen by the user */
+    private void saveNetwork() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            network.save(chooser.getSelectedFile().toPath());
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not save: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
-        return null;
+    }
+
+    /** Replace the current network with one loaded from a snapshot file chosen by the user */
+    private void openNetwork() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            network = SocialNetwork.load(chooser.getSelectedFile().toPath(), new IntMatrixAdjacency());
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not open: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        prefixIndex.close();
+        prefixIndex = new PrefixIndex(network);
+        for (ProfileSearchModel model : searchModels) {
+            model.setIndex(prefixIndex);
+        }
+        graphViz.updateGraph(network);
+        graphViz.repaint();
+    }
+
+    /** Helper: find Profile object by username using the network's username index, or null if there is none */
+    private Profile findProfile(String username) {
+        return username == null ? null : network.getProfile(username);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,516 @@
+package src.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Force-directed graph layout computed on a background thread.
+ *
+ * Friends pull on each other like springs and every pair of profiles pushes apart, so clusters of
+ * friends end up close together (Fruchterman-Reingold). The push between all pairs is approximated with
+ * a Barnes-Hut quadtree: a far-away group of profiles acts as one mass at its center, which makes an
+ * iteration O(n log n + edges) instead of O(n^2). Each iteration may move a profile at most a
+ * "temperature" that cools down, until the layout settles and the thread goes idle.
+ *
+ * update() hands over a new version of the graph. Profiles that were already laid out keep their
+ * position and new ones start next to their friends, so adding a profile or a friendship only nudges
+ * the layout instead of starting over. After each iteration (at most about 60 times a second) the
+ * positions are published as an immutable Frame and the listener is called, so a panel can paint the
+ * latest frame without ever waiting for the layout.
+ *
+ * Positions are in layout units, about one unit per friendship; the painter scales them to fit.
+ */
+final class ForceLayout {
+    // Barnes-Hut accuracy: a cell counts as one mass if its size is below THETA times its distance
+    private static final double THETA = 0.9;
+    private static final double GRAVITY = 0.05;
+    private static final double COOLING = 0.96;
+    private static final double MIN_TEMPERATURE = 0.005;
+    // Temperature after an update that kept most positions, relative to a fresh layout's
+    private static final double REHEAT = 0.15;
+    private static final long FRAME_NANOS = 16_000_000;
+    // Below this many profiles the forces are computed on one thread
+    private static final int PARALLEL_THRESHOLD = 2_000;
+    // Cells below this size stop splitting, so profiles at the same spot cannot recurse forever
+    private static final double MIN_CELL = 1e-6;
+
+    /**
+     * Positions of one graph at one point of the layout, with a grid over them for finding the profiles
+     * in a region. A frame is built on the layout thread, so painting it costs nothing extra.
+     */
+    static final class Frame {
+        /** Vertex i is profiles[i]. */
+        final Profile[] profiles;
+        /** Friends of vertex i are targets[offsets[i]] to targets[offsets[i + 1] - 1]. */
+        final int[] offsets;
+        final int[] targets;
+        /** Positions in layout units; null for a graph that has not been laid out yet. */
+        final float[] x;
+        final float[] y;
+        final float minX;
+        final float minY;
+        final float maxX;
+        final float maxY;
+        /** Whether the layout has stopped moving. */
+        final boolean settled;
+        // Grid of gridSize x gridSize cells over the bounds; profiles in cell c are
+        // gridNodes[gridStart[c]] to gridNodes[gridStart[c + 1] - 1]
+        private final int gridSize;
+        private final float cellWidth;
+        private final float cellHeight;
+        private final int[] gridStart;
+        private final int[] gridNodes;
+
+        Frame(Profile[] profiles, int[] offsets, int[] targets, float[] x, float[] y, boolean settled) {
+            this.profiles = profiles;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.x = x;
+            this.y = y;
+            this.settled = settled;
+            float x0 = 0;
+            float y0 = 0;
+            float x1 = 0;
+            float y1 = 0;
+            for (int i = 0; x != null && i < x.length; i++) {
+                if (i == 0 || x[i] < x0) {
+                    x0 = x[i];
+                }
+                if (i == 0 || x[i] > x1) {
+                    x1 = x[i];
+                }
+                if (i == 0 || y[i] < y0) {
+                    y0 = y[i];
+                }
+                if (i == 0 || y[i] > y1) {
+                    y1 = y[i];
+                }
+            }
+            minX = x0;
+            minY = y0;
+            maxX = x1;
+            maxY = y1;
+
+            // About two profiles per cell
+            int n = x == null ? 0 : x.length;
+            gridSize = Math.max(1, (int) Math.sqrt(n / 2.0));
+            cellWidth = Math.max((maxX - minX) / gridSize, Float.MIN_NORMAL);
+            cellHeight = Math.max((maxY - minY) / gridSize, Float.MIN_NORMAL);
+            gridStart = new int[gridSize * gridSize + 1];
+            gridNodes = new int[n];
+            int[] cellOf = new int[n];
+            for (int i = 0; i < n; i++) {
+                cellOf[i] = column(x[i]) + gridSize * row(y[i]);
+                gridStart[cellOf[i] + 1]++;
+            }
+            for (int c = 0; c < gridSize * gridSize; c++) {
+                gridStart[c + 1] += gridStart[c];
+            }
+            int[] next = Arrays.copyOf(gridStart, gridSize * gridSize);
+            for (int i = 0; i < n; i++) {
+                gridNodes[next[cellOf[i]]++] = i;
+            }
+        }
+
+        int size() {
+            return profiles.length;
+        }
+
+        int degree(int i) {
+            return offsets[i + 1] - offsets[i];
+        }
+
+        /**
+         * Call action with every profile whose position is inside the given rectangle, in no particular
+         * order. Takes time in proportion to the profiles in and near the rectangle.
+         */
+        void forEachIn(double x0, double y0, double x1, double y1, IntConsumer action) {
+            if (x == null || x1 < minX || x0 > maxX || y1 < minY || y0 > maxY) {
+                return;
+            }
+            int c0 = column(x0);
+            int c1 = column(x1);
+            int r1 = row(y1);
+            for (int r = row(y0); r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int cell = c + gridSize * r;
+                    for (int k = gridStart[cell]; k < gridStart[cell + 1]; k++) {
+                        int i = gridNodes[k];
+                        if (x[i] >= x0 && x[i] <= x1 && y[i] >= y0 && y[i] <= y1) {
+                            action.accept(i);
+                        }
+                    }
+                }
+            }
+        }
+
+        private int column(double px) {
+            return Math.max(0, Math.min(gridSize - 1, (int) ((px - minX) / cellWidth)));
+        }
+
+        private int row(double py) {
+            return Math.max(0, Math.min(gridSize - 1, (int) ((py - minY) / cellHeight)));
+        }
+    }
+
+    private final Runnable listener;
+    private final Random random = new Random(42);
+
+    // Guarded by this
+    private Frame pendingGraph;
+    private boolean closed;
+
+    private volatile Frame frame = new Frame(new Profile[0], new int[1], new int[0], new float[0], new float[0], true);
+
+    // Owned by the worker thread: the graph being laid out and its positions and displacements
+    private Frame graph = frame;
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] dx = new double[0];
+    private double[] dy = new double[0];
+    private double temperature;
+    private long publishedAt;
+
+    // Quadtree over the positions, rebuilt every iteration in flat arrays. Cell 0 is the root, so 0 also
+    // means "no child". A cell holds one profile (body >= 0), several (internal, body == -1) or several
+    // at the same spot (body == -2).
+    private int[] children = new int[0];
+    private int[] body = new int[0];
+    private double[] mass = new double[0];
+    private double[] massX = new double[0];
+    private double[] massY = new double[0];
+    private double[] cellX = new double[0];
+    private double[] cellY = new double[0];
+    private double[] cellSize = new double[0];
+    private int cells;
+
+    /**
+     * @param listener called on the layout thread after each published frame, e.g. a panel's repaint
+     */
+    ForceLayout(Runnable listener) {
+        this.listener = listener;
+        Thread worker = new Thread(this::run, "graph-layout");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Copy the profiles and friendships of network and lay them out, starting from the current
+     * positions. Call on the thread that owns the network; the copy takes O(n + edges).
+     */
+    void update(SocialNetwork network) {
+        int n = network.size();
+        Profile[] profiles = new Profile[n];
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            profiles[i] = network.getProfile(i);
+            offsets[i + 1] = offsets[i] + network.degree(i);
+        }
+        int[] targets = new int[offsets[n]];
+        int[] next = Arrays.copyOf(offsets, n);
+        network.forEachEdge((u, v) -> {
+            targets[next[u]++] = v;
+            targets[next[v]++] = u;
+        });
+        synchronized (this) {
+            pendingGraph = new Frame(profiles, offsets, targets, null, null, false);
+            notifyAll();
+        }
+    }
+
+    /**
+     * The latest published positions. Never null; empty until the first update() has been laid out.
+     */
+    Frame frame() {
+        return frame;
+    }
+
+    /**
+     * Stop the layout thread.
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Frame next;
+            synchronized (this) {
+                while (!closed && pendingGraph == null && temperature < MIN_TEMPERATURE) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                next = pendingGraph;
+                pendingGraph = null;
+            }
+            if (next != null) {
+                adopt(next);
+            }
+            step();
+            temperature *= COOLING;
+            boolean settled = temperature < MIN_TEMPERATURE;
+            long now = System.nanoTime();
+            if (settled || next != null || now - publishedAt >= FRAME_NANOS) {
+                publish(settled);
+                publishedAt = now;
+            }
+        }
+    }
+
+    // Switch to a new version of the graph, keeping the positions of the profiles it shares with the old
+    private void adopt(Frame next) {
+        int n = next.size();
+        HashMap<Long, Integer> oldIndex = new HashMap<>();
+        for (int i = 0; i < graph.size(); i++) {
+            oldIndex.put(graph.profiles[i].getId(), i);
+        }
+        double[] nx = new double[n];
+        double[] ny = new double[n];
+        boolean[] placed = new boolean[n];
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            Integer old = oldIndex.get(next.profiles[i].getId());
+            if (old != null) {
+                nx[i] = x[old];
+                ny[i] = y[old];
+                placed[i] = true;
+                kept++;
+            }
+        }
+        // New profiles start at the middle of their placed friends, or anywhere if they have none
+        double spread = Math.sqrt(n) + 1;
+        for (int i = 0; i < n; i++) {
+            if (placed[i]) {
+                continue;
+            }
+            double sx = 0;
+            double sy = 0;
+            int count = 0;
+            for (int k = next.offsets[i]; k < next.offsets[i + 1]; k++) {
+                int friend = next.targets[k];
+                if (placed[friend]) {
+                    sx += nx[friend];
+                    sy += ny[friend];
+                    count++;
+                }
+            }
+            if (count > 0) {
+                nx[i] = sx / count + random.nextGaussian() * 0.5;
+                ny[i] = sy / count + random.nextGaussian() * 0.5;
+            } else {
+                nx[i] = (random.nextDouble() - 0.5) * spread;
+                ny[i] = (random.nextDouble() - 0.5) * spread;
+            }
+            placed[i] = true;
+        }
+        graph = next;
+        x = nx;
+        y = ny;
+        dx = new double[n];
+        dy = new double[n];
+        double fresh = spread / 4;
+        temperature = Math.max(temperature, kept == 0 ? fresh : fresh * Math.max(REHEAT, 1 - (double) kept / n));
+    }
+
+    // One iteration: accumulate the forces into dx/dy, then move every profile at most temperature
+    private void step() {
+        int n = graph.size();
+        if (n == 0) {
+            temperature = 0;
+            return;
+        }
+        buildTree(n);
+        if (n >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, n).parallel().forEach(this::repel);
+        } else {
+            for (int i = 0; i < n; i++) {
+                repel(i);
+            }
+        }
+        // Springs along the friendships, each visited once from its smaller end
+        for (int u = 0; u < n; u++) {
+            for (int k = graph.offsets[u]; k < graph.offsets[u + 1]; k++) {
+                int v = graph.targets[k];
+                if (v <= u) {
+                    continue;
+                }
+                double ex = x[v] - x[u];
+                double ey = y[v] - y[u];
+                double d = Math.sqrt(ex * ex + ey * ey);
+                dx[u] += ex * d;
+                dy[u] += ey * d;
+                dx[v] -= ex * d;
+                dy[v] -= ey * d;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            double fx = dx[i] - GRAVITY * x[i];
+            double fy = dy[i] - GRAVITY * y[i];
+            double f = Math.sqrt(fx * fx + fy * fy);
+            if (f > temperature) {
+                fx *= temperature / f;
+                fy *= temperature / f;
+            }
+            x[i] += fx;
+            y[i] += fy;
+        }
+    }
+
+    // Push profile i away from every other, taking far cells as a whole (repulsion 1 / distance)
+    private void repel(int i) {
+        double fx = 0;
+        double fy = 0;
+        double xi = x[i];
+        double yi = y[i];
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int c = stack[--top];
+            if (body[c] == i) {
+                continue;
+            }
+            double ex = xi - massX[c];
+            double ey = yi - massY[c];
+            double d2 = ex * ex + ey * ey;
+            if (body[c] != -1 || cellSize[c] * cellSize[c] < THETA * THETA * d2) {
+                if (d2 < 1e-12) {
+                    // Same spot: push in an arbitrary but fixed direction
+                    ex = (i & 1) == 0 ? 1e-3 : -1e-3;
+                    ey = (i & 2) == 0 ? 1e-3 : -1e-3;
+                    d2 = 2e-6;
+                }
+                double m = body[c] == -2 && d2 < 1e-12 ? mass[c] - 1 : mass[c];
+                fx += ex * m / d2;
+                fy += ey * m / d2;
+                continue;
+            }
+            for (int q = 0; q < 4; q++) {
+                int child = children[4 * c + q];
+                if (child != 0) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = child;
+                }
+            }
+        }
+        dx[i] = fx;
+        dy[i] = fy;
+    }
+
+    private void buildTree(int n) {
+        double x0 = x[0];
+        double y0 = y[0];
+        double x1 = x0;
+        double y1 = y0;
+        for (int i = 1; i < n; i++) {
+            x0 = Math.min(x0, x[i]);
+            y0 = Math.min(y0, y[i]);
+            x1 = Math.max(x1, x[i]);
+            y1 = Math.max(y1, y[i]);
+        }
+        cells = 0;
+        int root = newCell(x0, y0, Math.max(Math.max(x1 - x0, y1 - y0), MIN_CELL) * 1.0001);
+        for (int i = 0; i < n; i++) {
+            insert(root, i);
+        }
+        for (int c = 0; c < cells; c++) {
+            massX[c] /= mass[c];
+            massY[c] /= mass[c];
+        }
+    }
+
+    private void insert(int c, int i) {
+        while (true) {
+            if (mass[c] == 0) {
+                body[c] = i;
+                addMass(c, i);
+                return;
+            }
+            if (body[c] >= 0) {
+                if (cellSize[c] < MIN_CELL) {
+                    body[c] = -2;
+                } else {
+                    // Split the leaf: its profile moves down a level
+                    int j = body[c];
+                    body[c] = -1;
+                    int child = childFor(c, j);
+                    body[child] = j;
+                    addMass(child, j);
+                }
+            }
+            addMass(c, i);
+            if (body[c] == -2) {
+                return;
+            }
+            c = childFor(c, i);
+        }
+    }
+
+    private void addMass(int c, int i) {
+        mass[c]++;
+        massX[c] += x[i];
+        massY[c] += y[i];
+    }
+
+    // The quadrant of cell c that contains profile i, created if missing
+    private int childFor(int c, int i) {
+        double half = cellSize[c] / 2;
+        int q = (x[i] >= cellX[c] + half ? 1 : 0) | (y[i] >= cellY[c] + half ? 2 : 0);
+        int child = children[4 * c + q];
+        if (child == 0) {
+            child = newCell(cellX[c] + ((q & 1) != 0 ? half : 0), cellY[c] + ((q & 2) != 0 ? half : 0), half);
+            children[4 * c + q] = child;
+        }
+        return child;
+    }
+
+    private int newCell(double cx, double cy, double size) {
+        if (cells == body.length) {
+            int capacity = Math.max(64, cells * 2);
+            children = Arrays.copyOf(children, 4 * capacity);
+            body = Arrays.copyOf(body, capacity);
+            mass = Arrays.copyOf(mass, capacity);
+            massX = Arrays.copyOf(massX, capacity);
+            massY = Arrays.copyOf(massY, capacity);
+            cellX = Arrays.copyOf(cellX, capacity);
+            cellY = Arrays.copyOf(cellY, capacity);
+            cellSize = Arrays.copyOf(cellSize, capacity);
+        }
+        int c = cells++;
+        Arrays.fill(children, 4 * c, 4 * c + 4, 0);
+        body[c] = -1;
+        mass[c] = 0;
+        massX[c] = 0;
+        massY[c] = 0;
+        cellX[c] = cx;
+        cellY[c] = cy;
+        cellSize[c] = size;
+        return c;
+    }
+
+    private void publish(boolean settled) {
+        int n = graph.size();
+        float[] fx = new float[n];
+        float[] fy = new float[n];
+        for (int i = 0; i < n; i++) {
+            fx[i] = (float) x[i];
+            fy[i] = (float) y[i];
+        }
+        frame = new Frame(graph.profiles, graph.offsets, graph.targets, fx, fy, settled);
+        listener.run();
+    }
+}
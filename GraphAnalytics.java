@@ -0,0 +1,369 @@
+package src.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Whole-graph statistics of a SocialNetwork: connected components, isolated profiles, the degree
+ * distribution, the triangle count and the global clustering coefficient.
+ *
+ * The analytics register themselves as a GraphListener and follow later changes incrementally where
+ * that is exact: the degree distribution always, components on added friendships (one union per
+ * edge), and triangles on added and removed single friendships (the friends the two endpoints have in
+ * common). Removing a friendship or profile can split a component, and a bulk add can close triangles
+ * with several new edges, so those only mark the affected statistic stale. Stale statistics are
+ * recomputed in parallel by the next query that needs them.
+ *
+ * Components are found with a lock-free union-find over an AtomicIntegerArray, so the edges can be
+ * unioned from many threads at once. Roots are always linked under the smaller vertex id, which keeps
+ * parent[i] <= i and rules out cycles without locking.
+ *
+ * Like SocialNetwork this is not safe to use from several threads at once. Call close() to stop
+ * following the network.
+ */
+public class GraphAnalytics {
+    // Batches with at least this many new edges are unioned in parallel
+    private static final int PARALLEL_THRESHOLD = 10_000;
+
+    private final SocialNetwork network;
+    private final GraphListener listener = new Updater();
+
+    // Union-find forest and, for roots, the size of their component. Valid unless componentsDirty.
+    private AtomicIntegerArray parent = new AtomicIntegerArray(0);
+    private int[] componentSize = new int[0];
+    private int components;
+    private int largestComponent;
+    private boolean componentsDirty = true;
+
+    // degreeCounts[d] is the number of profiles with exactly d friends
+    private long[] degreeCounts = new long[1];
+    // Paths of length two (pairs of friends of the same profile), the denominator of the clustering coefficient
+    private long connectedTriples;
+
+    private long triangles;
+    private boolean trianglesDirty = true;
+
+    /**
+     * Start following network. The degree distribution is computed now; components and triangles on
+     * first use.
+     */
+    public GraphAnalytics(SocialNetwork network) {
+        this.network = network;
+        rebuildDegrees();
+        network.addListener(listener);
+    }
+
+    /**
+     * Stop following the network. Later queries return the statistics as of this call.
+     */
+    public void close() {
+        network.removeListener(listener);
+    }
+
+    /**
+     * Number of connected components. A profile without friends is a component of its own.
+     */
+    public int componentCount() {
+        ensureComponents();
+        return components;
+    }
+
+    /**
+     * Number of profiles in the largest connected component, or 0 if the network is empty.
+     */
+    public int largestComponentSize() {
+        ensureComponents();
+        return largestComponent;
+    }
+
+    /**
+     * Number of profiles in the component of the given vertex id, itself included.
+     *
+     * @throws IllegalArgumentException if id is not between 0 and size()-1 of the network
+     */
+    public int componentSize(int id) {
+        checkVertex(id);
+        ensureComponents();
+        return componentSize[find(id)];
+    }
+
+    /**
+     * Number of profiles in the component of a profile, or 0 if it is not in the network.
+     */
+    public int componentSize(Profile profile) {
+        int id = network.indexOf(profile);
+        return id >= 0 ? componentSize(id) : 0;
+    }
+
+    /**
+     * Whether a chain of friendships connects the two vertex ids.
+     *
+     * @throws IllegalArgumentException if a or b is not between 0 and size()-1 of the network
+     */
+    public boolean connected(int a, int b) {
+        checkVertex(a);
+        checkVertex(b);
+        ensureComponents();
+        return find(a) == find(b);
+    }
+
+    /**
+     * Size of every connected component, largest first.
+     */
+    public int[] componentSizes() {
+        ensureComponents();
+        int[] sizes = new int[components];
+        int k = 0;
+        for (int i = 0; i < network.size(); i++) {
+            if (parent.get(i) == i) {
+                sizes[k++] = componentSize[i];
+            }
+        }
+        Arrays.sort(sizes);
+        for (int i = 0, j = sizes.length - 1; i < j; i++, j--) {
+            int t = sizes[i];
+            sizes[i] = sizes[j];
+            sizes[j] = t;
+        }
+        return sizes;
+    }
+
+    /**
+     * Number of profiles without friends.
+     */
+    public long isolatedCount() {
+        return degreeCounts[0];
+    }
+
+    /**
+     * The degree distribution: element d is the number of profiles with exactly d friends. The array
+     * ends at the highest degree in the network.
+     */
+    public long[] degreeDistribution() {
+        int end = degreeCounts.length;
+        while (end > 1 && degreeCounts[end - 1] == 0) {
+            end--;
+        }
+        return Arrays.copyOf(degreeCounts, end);
+    }
+
+    /**
+     * Number of triangles, i.e. sets of three profiles who are all friends with each other.
+     */
+    public long triangleCount() {
+        if (trianglesDirty) {
+            triangles = countTriangles();
+            trianglesDirty = false;
+        }
+        return triangles;
+    }
+
+    /**
+     * Global clustering coefficient (transitivity): the fraction of pairs of friends of the same
+     * profile who are friends themselves. Between 0 and 1, and 0 if no profile has two friends.
+     */
+    public double clusteringCoefficient() {
+        return connectedTriples == 0 ? 0 : 3.0 * triangleCount() / connectedTriples;
+    }
+
+    private void ensureComponents() {
+        if (!componentsDirty) {
+            return;
+        }
+        Adjacency adjacency = network.adjacency();
+        int n = network.size();
+        parent = new AtomicIntegerArray(Math.max(n, network.capacity()));
+        for (int i = 0; i < n; i++) {
+            parent.set(i, i);
+        }
+        IntStream.range(0, n).parallel().forEach(u -> adjacency.forEachNeighbor(u, v -> {
+            if (u < v) {
+                union(u, v);
+            }
+        }));
+        countComponents();
+        componentsDirty = false;
+    }
+
+    // Recompute componentSize, components and largestComponent from the forest
+    private void countComponents() {
+        int n = network.size();
+        componentSize = new int[parent.length()];
+        for (int i = 0; i < n; i++) {
+            componentSize[find(i)]++;
+        }
+        components = 0;
+        largestComponent = 0;
+        for (int i = 0; i < n; i++) {
+            if (parent.get(i) == i) {
+                components++;
+                largestComponent = Math.max(largestComponent, componentSize[i]);
+            }
+        }
+    }
+
+    private void checkVertex(int id) {
+        if (id < 0 || id >= network.size()) {
+            throw new IllegalArgumentException("No vertex " + id + " in a network of " + network.size());
+        }
+    }
+
+    // Root of x, halving the path on the way. Safe to call concurrently with union().
+    private int find(int x) {
+        while (true) {
+            int p = parent.get(x);
+            if (p == x) {
+                return x;
+            }
+            int grandparent = parent.get(p);
+            if (grandparent != p) {
+                parent.compareAndSet(x, p, grandparent);
+            }
+            x = grandparent;
+        }
+    }
+
+    // Join the components of a and b. Safe to call from several threads at once.
+    private void union(int a, int b) {
+        while (true) {
+            int ra = find(a);
+            int rb = find(b);
+            if (ra == rb) {
+                return;
+            }
+            // Fails if another thread linked the larger root first; then look the roots up again
+            if (parent.compareAndSet(Math.max(ra, rb), Math.max(ra, rb), Math.min(ra, rb))) {
+                return;
+            }
+        }
+    }
+
+    // Sequential union that also keeps the component sizes up to date
+    private void merge(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) {
+            return;
+        }
+        int root = Math.min(ra, rb);
+        int child = Math.max(ra, rb);
+        parent.set(child, root);
+        componentSize[root] += componentSize[child];
+        components--;
+        largestComponent = Math.max(largestComponent, componentSize[root]);
+    }
+
+    /*
+     * Every triangle has three edges, and for each edge (u, v) the third corner is a common neighbor,
+     * so summing the common neighbors over all edges counts each triangle three times.
+     */
+    private long countTriangles() {
+        Adjacency adjacency = network.adjacency();
+        return IntStream.range(0, network.size()).parallel().mapToLong(u -> {
+            long[] sum = { 0 };
+            adjacency.forEachNeighbor(u, v -> {
+                if (u < v) {
+                    sum[0] += adjacency.countCommonNeighbors(u, v);
+                }
+            });
+            return sum[0];
+        }).sum() / 3;
+    }
+
+    private void rebuildDegrees() {
+        degreeCounts = new long[1];
+        connectedTriples = 0;
+        for (int i = 0; i < network.size(); i++) {
+            int d = network.degree(i);
+            countDegree(d, 1);
+            connectedTriples += (long) d * (d - 1) / 2;
+        }
+    }
+
+    private void countDegree(int degree, int delta) {
+        if (degree >= degreeCounts.length) {
+            degreeCounts = Arrays.copyOf(degreeCounts, Math.max(degree + 1, degreeCounts.length * 2));
+        }
+        degreeCounts[degree] += delta;
+    }
+
+    // id just gained (delta 1) or lost (delta -1) a friend
+    private void degreeChanged(int id, int delta) {
+        int now = network.degree(id);
+        int before = now - delta;
+        countDegree(before, -1);
+        countDegree(now, 1);
+        // A profile with d friends is the middle of d * (d - 1) / 2 triples
+        connectedTriples += delta > 0 ? before : -now;
+    }
+
+    private class Updater implements GraphListener {
+
+        @Override
+        public void profileAdded(int id) {
+            countDegree(0, 1);
+            if (componentsDirty) {
+                return;
+            }
+            if (id >= parent.length()) {
+                AtomicIntegerArray grown = new AtomicIntegerArray(Math.max(id + 1, parent.length() * 2));
+                for (int i = 0; i < id; i++) {
+                    grown.set(i, parent.get(i));
+                }
+                parent = grown;
+                componentSize = Arrays.copyOf(componentSize, grown.length());
+            }
+            parent.set(id, id);
+            componentSize[id] = 1;
+            components++;
+            largestComponent = Math.max(largestComponent, 1);
+        }
+
+        @Override
+        public void friendAdded(int u, int v) {
+            degreeChanged(u, 1);
+            degreeChanged(v, 1);
+            if (!trianglesDirty) {
+                triangles += network.adjacency().countCommonNeighbors(u, v);
+            }
+            if (!componentsDirty) {
+                merge(u, v);
+            }
+        }
+
+        @Override
+        public void friendsAdded(int[] us, int[] vs, int count) {
+            rebuildDegrees();
+            trianglesDirty = true;
+            if (componentsDirty) {
+                return;
+            }
+            if (count < PARALLEL_THRESHOLD) {
+                for (int k = 0; k < count; k++) {
+                    merge(us[k], vs[k]);
+                }
+            } else {
+                IntStream.range(0, count).parallel().forEach(k -> union(us[k], vs[k]));
+                countComponents();
+            }
+        }
+
+        @Override
+        public void friendRemoved(int u, int v) {
+            degreeChanged(u, -1);
+            degreeChanged(v, -1);
+            if (!trianglesDirty) {
+                triangles -= network.adjacency().countCommonNeighbors(u, v);
+            }
+            componentsDirty = true;
+        }
+
+        @Override
+        public void profileRemoved(int id, int lastId) {
+            // Its friendships are gone already, so it left as a profile without friends
+            countDegree(0, -1);
+            componentsDirty = true;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package src.graph;
+
+/**
+ * Receives structural changes of a SocialNetwork, by vertex id, right after they are applied.
+ *
+ * Lets derived data such as GraphAnalytics be kept up to date incrementally instead of recomputed.
+ * Callbacks run on the thread that made the change, while the network is in a consistent state, and
+ * must not modify the network. All methods do nothing by default.
+ */
+public interface GraphListener {
+
+    /**
+     * A profile was added as vertex id, with no friends.
+     */
+    default void profileAdded(int id) {
+    }
+
+    /**
+     * The friendship (u, v) was added. Not called for friendships that already existed.
+     */
+    default void friendAdded(int u, int v) {
+    }
+
+    /**
+     * The friendships (us[k], vs[k]) for k below count were added by one bulk addFriends() call.
+     * Every pair is new and appears once. Called instead of friendAdded() for each of them.
+     */
+    default void friendsAdded(int[] us, int[] vs, int count) {
+    }
+
+    /**
+     * The friendship (u, v) was removed.
+     */
+    default void friendRemoved(int u, int v) {
+    }
+
+    /**
+     * The profile at id changed its username from oldUsername.
+     */
+    default void profileRenamed(int id, String oldUsername) {
+    }
+
+    /**
+     * The profile at id is about to be removed. The friendRemoved() and friendAdded() calls that follow,
+     * up to profileRemoved(), are part of the removal.
+     */
+    default void profileRemoving(int id) {
+    }
+
+    /**
+     * A profile was removed. Its friendships were removed first (each reported through friendRemoved()),
+     * and the friendships of the last vertex were moved onto id, so id now belongs to the profile that
+     * used to be last, unless the removed profile was itself last. The vertex count is now lastId.
+     *
+     * @param id vertex id the removed profile had
+     * @param lastId vertex id that no longer exists
+     */
+    default void profileRemoved(int id, int lastId) {
+    }
+}
@@ -0,0 +1,280 @@
+package src.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Breadth-first searches over the adjacency of a SocialNetwork.
+ *
+ * Everything works on vertex ids with primitive int queues and long[] bitsets, so no Integer boxing
+ * happens even on graphs with millions of vertices. The sequential searches reuse one workspace
+ * between calls and clear only what they touched, which makes them cheap to call repeatedly but
+ * means an instance must not be used by two threads at once.
+ */
+final class GraphTraversal {
+    // Beamer et al.'s switching thresholds for direction-optimizing BFS
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+
+    private final SocialNetwork network;
+
+    // Workspace for the bidirectional search: one queue, visited bitset, parent and distance per side.
+    // Only the entries of vertices in the queues are meaningful, and only those bits are ever set.
+    private int[] queueA = new int[0];
+    private int[] queueB = new int[0];
+    private long[] visitedA = new long[0];
+    private long[] visitedB = new long[0];
+    private int[] parentA = new int[0];
+    private int[] parentB = new int[0];
+    private int[] distA = new int[0];
+    private int[] distB = new int[0];
+
+    GraphTraversal(SocialNetwork network) {
+        this.network = network;
+    }
+
+    private void ensureWorkspace(int n) {
+        if (queueA.length >= n) {
+            return;
+        }
+        int capacity = Math.max(n, network.capacity());
+        queueA = new int[capacity];
+        queueB = new int[capacity];
+        visitedA = new long[BitMatrixAdjacency.words(capacity)];
+        visitedB = new long[BitMatrixAdjacency.words(capacity)];
+        parentA = new int[capacity];
+        parentB = new int[capacity];
+        distA = new int[capacity];
+        distB = new int[capacity];
+    }
+
+    private static boolean test(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    /**
+     * Vertex ids along a shortest path from a to b, both included, or an empty array if there is none.
+     *
+     * Runs a bidirectional BFS that always expands the smaller frontier by one whole level. A level
+     * is finished before stopping so that the best meeting vertex in it is chosen.
+     */
+    int[] shortestPath(int a, int b) {
+        if (a == b) {
+            return new int[] { a };
+        }
+        Adjacency adjacency = network.adjacency();
+        ensureWorkspace(network.size());
+        int[] qa = queueA;
+        int[] qb = queueB;
+        int[] tails = { 1, 1 };
+        int headA = 0;
+        int headB = 0;
+        qa[0] = a;
+        qb[0] = b;
+        set(visitedA, a);
+        set(visitedB, b);
+        parentA[a] = -1;
+        parentB[b] = -1;
+        distA[a] = 0;
+        distB[b] = 0;
+
+        int[] best = { -1, Integer.MAX_VALUE };
+        while (best[0] < 0 && headA < tails[0] && headB < tails[1]) {
+            boolean forward = tails[0] - headA <= tails[1] - headB;
+            int[] queue = forward ? qa : qb;
+            long[] visited = forward ? visitedA : visitedB;
+            long[] otherVisited = forward ? visitedB : visitedA;
+            int[] parent = forward ? parentA : parentB;
+            int[] dist = forward ? distA : distB;
+            int[] otherDist = forward ? distB : distA;
+            int side = forward ? 0 : 1;
+            int levelEnd = tails[side];
+            for (int head = forward ? headA : headB; head < levelEnd; head++) {
+                int u = queue[head];
+                adjacency.forEachNeighbor(u, w -> {
+                    if (test(visited, w)) {
+                        return;
+                    }
+                    set(visited, w);
+                    parent[w] = u;
+                    dist[w] = dist[u] + 1;
+                    queue[tails[side]++] = w;
+                    if (test(otherVisited, w) && dist[w] + otherDist[w] < best[1]) {
+                        best[0] = w;
+                        best[1] = dist[w] + otherDist[w];
+                    }
+                });
+            }
+            if (forward) {
+                headA = levelEnd;
+            } else {
+                headB = levelEnd;
+            }
+        }
+
+        int[] path = new int[0];
+        int meet = best[0];
+        if (meet >= 0) {
+            path = new int[best[1] + 1];
+            int k = distA[meet];
+            for (int v = meet; v >= 0; v = parentA[v]) {
+                path[k--] = v;
+            }
+            k = distA[meet];
+            for (int v = parentB[meet]; v >= 0; v = parentB[v]) {
+                path[++k] = v;
+            }
+        }
+        // Clear exactly the bits that were set
+        for (int i = 0; i < tails[0]; i++) {
+            visitedA[qa[i] >>> 6] = 0;
+        }
+        for (int i = 0; i < tails[1]; i++) {
+            visitedB[qb[i] >>> 6] = 0;
+        }
+        return path;
+    }
+
+    /**
+     * Hop distance from source to every vertex, or -1 for vertices further than maxDepth or unreachable.
+     */
+    int[] distancesFrom(int source, int maxDepth) {
+        Adjacency adjacency = network.adjacency();
+        int n = network.size();
+        ensureWorkspace(n);
+        int[] dist = new int[n];
+        Arrays.fill(dist, -1);
+        int[] queue = queueA;
+        int[] tail = { 1 };
+        queue[0] = source;
+        dist[source] = 0;
+        for (int head = 0; head < tail[0]; head++) {
+            int u = queue[head];
+            int next = dist[u] + 1;
+            if (next > maxDepth) {
+                break;
+            }
+            adjacency.forEachNeighbor(u, w -> {
+                if (dist[w] < 0) {
+                    dist[w] = next;
+                    queue[tail[0]++] = w;
+                }
+            });
+        }
+        return dist;
+    }
+
+    /**
+     * Hop distance from source to every vertex (-1 if unreachable), computed in parallel on the common
+     * fork-join pool.
+     *
+     * Direction-optimizing BFS: small frontiers are expanded top-down (each frontier vertex claims its
+     * unvisited neighbors with a CAS on the visited bitset). Once the edges leaving the frontier
+     * outweigh the edges of the unvisited vertices, it switches to bottom-up, where each unvisited
+     * vertex looks for any neighbor in the frontier and stops at the first one. It switches back when
+     * the frontier shrinks again.
+     */
+    int[] parallelDistancesFrom(int source) {
+        Adjacency adjacency = network.adjacency();
+        int n = network.size();
+        int words = BitMatrixAdjacency.words(n);
+        int[] dist = new int[n];
+        Arrays.fill(dist, -1);
+        dist[source] = 0;
+        AtomicLongArray visited = new AtomicLongArray(words);
+        visited.set(source >>> 6, 1L << source);
+
+        int[] frontier = { source };
+        long[] frontierBits = null;
+        long frontierEdges = network.degree(source);
+        long unexploredEdges = 2 * network.friendshipCount() - frontierEdges;
+        boolean bottomUp = false;
+        for (int level = 1; frontier.length > 0; level++) {
+            if (!bottomUp && frontierEdges > unexploredEdges / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && frontier.length < n / BETA) {
+                bottomUp = false;
+            }
+            AtomicLongArray next = new AtomicLongArray(words);
+            int depth = level;
+            if (bottomUp) {
+                if (frontierBits == null) {
+                    frontierBits = toBits(frontier, words);
+                }
+                long[] inFrontier = frontierBits;
+                IntStream.range(0, n).parallel().forEach(v -> {
+                    if (dist[v] < 0 && adjacency.anyNeighbor(v, w -> test(inFrontier, w))) {
+                        dist[v] = depth;
+                        next.accumulateAndGet(v >>> 6, 1L << v, (x, y) -> x | y);
+                    }
+                });
+            } else {
+                int[] current = frontier;
+                IntStream.range(0, current.length).parallel().forEach(k -> adjacency.forEachNeighbor(current[k], w -> {
+                    if (claim(visited, w)) {
+                        dist[w] = depth;
+                        next.accumulateAndGet(w >>> 6, 1L << w, (x, y) -> x | y);
+                    }
+                }));
+            }
+            // Bottom-up steps write dist directly, so sync visited from the new frontier
+            frontierBits = new long[words];
+            for (int w = 0; w < words; w++) {
+                frontierBits[w] = next.get(w);
+                if (bottomUp) {
+                    visited.set(w, visited.get(w) | frontierBits[w]);
+                }
+            }
+            frontier = toIds(frontierBits);
+            frontierEdges = 0;
+            for (int v : frontier) {
+                frontierEdges += network.degree(v);
+            }
+            unexploredEdges -= frontierEdges;
+        }
+        return dist;
+    }
+
+    private static boolean claim(AtomicLongArray bits, int i) {
+        long bit = 1L << i;
+        while (true) {
+            long word = bits.get(i >>> 6);
+            if ((word & bit) != 0) {
+                return false;
+            }
+            if (bits.compareAndSet(i >>> 6, word, word | bit)) {
+                return true;
+            }
+        }
+    }
+
+    private static long[] toBits(int[] ids, int words) {
+        long[] bits = new long[words];
+        for (int id : ids) {
+            set(bits, id);
+        }
+        return bits;
+    }
+
+    private static int[] toIds(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        int[] ids = new int[count];
+        int k = 0;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                ids[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return ids;
+    }
+}
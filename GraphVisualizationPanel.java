@@ -1,124 +1,176 @@
 package src.graph;
 
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
-import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.io.IOException;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import javax.imageio.ImageIO;
+import java.util.Arrays;
 import javax.swing.*;
 
+/**
+ * Draws the social network as a force-directed graph. Drag to pan, use the mouse wheel to zoom and
+ * double-click to fit the whole graph again.
+ *
+ * Painting takes time in proportion to what is on screen, not to the size of the graph: only profiles
+ * inside the view are drawn, found through the frame's grid, and only friendships with at least one end
+ * in view (a friendship between two profiles off screen is not drawn even if it crosses the view). The
+ * edges are drawn into an image that reaches a margin beyond the panel and is reused until the layout
+ * or the zoom changes; panning only moves the image until the view leaves that margin. Edges are
+ * antialiased only when few are in the image. When zoomed out, profiles become plain circles and then
+ * dots, without image or username; those are copied from an image per color rather than drawn one by
+ * one.
+ */
 public class GraphVisualizationPanel extends JPanel {
-    private List<Profile> profiles;
-    private NetworkGraph network;
-    private Map<Profile, Point2D.Double> nodePositions;
-    private Map<Profile, BufferedImage> profileImages;
+    private final ForceLayout layout = new ForceLayout(this::repaint);
+    private final ProfileImageCache imageCache;
     private static final int NODE_RADIUS = 25;
     private static final int PADDING = 50;
+    // Largest zoom in pixels per layout unit when fitting, so a handful of profiles does not fill the panel
+    private static final double MAX_SCALE = 120;
+    // Nodes smaller than this, or more nodes in view than DETAIL_NODES, are drawn without image or username
+    private static final double DETAIL_RADIUS = 10;
+    private static final int DETAIL_NODES = 500;
+    // Nodes smaller than this are drawn as dots, without border
+    private static final double DOT_RADIUS = 3;
+    // Edges are antialiased only if at most this many are in view
+    private static final int ANTIALIAS_EDGES = 2_000;
+    // The edge layer reaches this fraction of the panel's width and height beyond each side
+    private static final double EDGE_MARGIN = 0.25;
+    private static final double MIN_ZOOM = 0.25;
+    private static final double MAX_ZOOM = 1000;
+    private static final double ZOOM_STEP = 1.2;
     
-    public GraphVisualizationPanel() {
-        this.profiles = new ArrayList<>();
-        this.network = null;
-        this.nodePositions = new HashMap<>();
-        this.profileImages = new HashMap<>();
-        setPreferredSize(new Dimension(600, 400));
-        setBackground(Color.WHITE);
-    }
+    private static final Color EDGE_COLOR = new Color(200, 200, 200);
+    // Node colors by number of friends, see colorIndex()
+    private static final Color[] NODE_COLORS = {
+        new Color(255, 200, 200), // Light red for isolated nodes
+        new Color(200, 255, 200), // Light green for few friends
+        new Color(200, 200, 255), // Light blue for many friends
+    };
+    private static final BasicStroke THICK_STROKE = new BasicStroke(2);
+    private static final BasicStroke THIN_STROKE = new BasicStroke(1);
+    private static final Font LABEL_FONT = new Font("Arial", Font.BOLD, 10);
+    private static final Font MESSAGE_FONT = new Font("Arial", Font.BOLD, 16);
     
-    public void updateGraph(List<Profile> profiles, NetworkGraph network) {
-        this.profiles = new ArrayList<>(profiles);
-        this.network = network;
-        loadProfileImages();
-        calculateNodePositions();
-    }
+    // View relative to the whole layout fitted and centered in the panel; changed with the mouse
+    private double zoom = 1;
+    private double panX;
+    private double panY;
+    
+    // Transform of the frame being painted: pixel = origin + scale * layout position
+    private double scale;
+    private double originX;
+    private double originY;
+    
+    // Edges of the last painted frame and scale, with the origin of that paint at (edgeMarginX +
+    // edgeOriginX, edgeMarginY + edgeOriginY) in the image
+    private BufferedImage edgeLayer;
+    private int edgeMarginX;
+    private int edgeMarginY;
+    private ForceLayout.Frame edgeFrame;
+    private double edgeScale;
+    private double edgeOriginX;
+    private double edgeOriginY;
+    
+    // Profiles within the edge layer: inLayer[0..inLayerCount), and layerMark[i] == layerCount for each
+    private int[] inLayer = new int[0];
+    private int inLayerCount;
+    private int[] layerMark = new int[0];
+    private int layerCount;
+    
+    // Profiles in view: visible[0..visibleCount), and inView[i] == paintCount for each of them
+    private int[] visible = new int[0];
+    private int visibleCount;
+    private int[] inView = new int[0];
+    private int paintCount;
     
-    private void loadProfileImages() {
-        profileImages.clear();
-        for (Profile profile : profiles) {
-            String imageUrl = profile.getProfileImage();
-            if (imageUrl != null && !imageUrl.isEmpty()) {
-                try {
-                    URL url = new URL(imageUrl);
-                    BufferedImage originalImage = ImageIO.read(url);
-                    if (originalImage != null) {
-                        // Resize image to fit in node
-                        BufferedImage resizedImage = resizeImage(originalImage, NODE_RADIUS * 2, NODE_RADIUS * 2);
-                        profileImages.put(profile, resizedImage);
-                    }
-                } catch (IOException | IllegalArgumentException e) {
-                    // Image failed to load, will use default circle
-                    System.out.println("Failed to load image for " + profile.getUsername() + ": " + e.getMessage());
+    // Plain nodes of radius spriteRadius in each of NODE_COLORS
+    private BufferedImage[] sprites;
+    private double spriteRadius;
+    
+    private final Line2D.Double line = new Line2D.Double();
+    private final Ellipse2D.Double circle = new Ellipse2D.Double();
+    
+    /**
+     * @param imageCache loads profile images in the background; nodes show a colored circle until then
+     */
+    public GraphVisualizationPanel(ProfileImageCache imageCache) {
+        this.imageCache = imageCache;
+        setPreferredSize(new Dimension(600, 400));
+        setBackground(Color.WHITE);
+        
+        MouseAdapter mouse = new MouseAdapter() {
+            private Point dragFrom;
+            
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragFrom = e.getPoint();
+            }
+            
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragFrom != null) {
+                    panX += e.getX() - dragFrom.x;
+                    panY += e.getY() - dragFrom.y;
+                    dragFrom = e.getPoint();
+                    repaint();
                 }
             }
-        }
+            
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoomAt(e.getX(), e.getY(), Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()));
+            }
+            
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    zoom = 1;
+                    panX = 0;
+                    panY = 0;
+                    repaint();
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
     }
     
-    private BufferedImage resizeImage(BufferedImage originalImage, int targetWidth, int targetHeight) {
-        // Use higher resolution for better quality
-        int highResWidth = targetWidth * 2;
-        int highResHeight = targetHeight * 2;
-        
-        BufferedImage resizedImage = new BufferedImage(highResWidth, highResHeight, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = resizedImage.createGraphics();
-        
-        // Use high-quality rendering hints
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_ENABLE);
-        g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
-        
-        // Create circular clip
-        g2d.setClip(new Ellipse2D.Double(0, 0, highResWidth, highResHeight));
-        g2d.drawImage(originalImage, 0, 0, highResWidth, highResHeight, null);
-        g2d.dispose();
-        
-        // Scale down to target size for final result
-        BufferedImage finalImage = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D finalG2d = finalImage.createGraphics();
-        finalG2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        finalG2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        finalG2d.drawImage(resizedImage, 0, 0, targetWidth, targetHeight, null);
-        finalG2d.dispose();
-        
-        return finalImage;
+    /**
+     * Show the profiles and friendships of network. The layout is computed on a background thread,
+     * starting from the current positions, and the panel repaints as it moves; call this on the thread
+     * that modifies the network after every change.
+     */
+    public void updateGraph(SocialNetwork network) {
+        if (network != null) {
+            layout.update(network);
+        }
     }
     
-    private void calculateNodePositions() {
-        nodePositions.clear();
-        if (profiles.isEmpty()) return;
-        
-        int numProfiles = profiles.size();
-        int centerX = getWidth() / 2;
-        int centerY = getHeight() / 2;
-        int radius = Math.min(getWidth(), getHeight()) / 3 - PADDING;
-        
-        for (int i = 0; i < numProfiles; i++) {
-            double angle = 2 * Math.PI * i / numProfiles;
-            double x = centerX + radius * Math.cos(angle);
-            double y = centerY + radius * Math.sin(angle);
-            nodePositions.put(profiles.get(i), new Point2D.Double(x, y));
-        }
+    // Zoom by factor, keeping the point under the mouse in place
+    private void zoomAt(int mouseX, int mouseY, double factor) {
+        double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        factor = newZoom / zoom;
+        zoom = newZoom;
+        panX = mouseX - getWidth() / 2.0 - (mouseX - getWidth() / 2.0 - panX) * factor;
+        panY = mouseY - getHeight() / 2.0 - (mouseY - getHeight() / 2.0 - panY) * factor;
+        repaint();
     }
     
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         
-        if (profiles.isEmpty()) {
+        ForceLayout.Frame frame = layout.frame();
+        if (frame.size() == 0) {
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             g2d.setColor(Color.GRAY);
-            g2d.setFont(new Font("Arial", Font.BOLD, 16));
+            g2d.setFont(MESSAGE_FONT);
             String message = "No profiles to display";
             FontMetrics fm = g2d.getFontMetrics();
             int x = (getWidth() - fm.stringWidth(message)) / 2;
@@ -126,97 +178,203 @@ public class GraphVisualizationPanel extends JPanel {
             g2d.drawString(message, x, y);
             return;
         }
-        
-        // Recalculate positions if needed
-        if (nodePositions.isEmpty()) {
-            calculateNodePositions();
+        if (getWidth() <= 0 || getHeight() <= 0) {
+            return;
         }
         
-        // Draw edges (friendships)
-        g2d.setColor(new Color(200, 200, 200));
-        g2d.setStroke(new BasicStroke(2));
+        // Fit the layout into the panel, centered, then apply the user's zoom and pan
+        double width = Math.max(1, getWidth() - 2 * PADDING);
+        double height = Math.max(1, getHeight() - 2 * PADDING);
+        double fit = Math.min(MAX_SCALE, Math.min(width / Math.max(1e-9, frame.maxX - frame.minX),
+            height / Math.max(1e-9, frame.maxY - frame.minY)));
+        scale = fit * zoom;
+        originX = getWidth() / 2.0 + panX - scale * (frame.minX + frame.maxX) / 2;
+        originY = getHeight() / 2.0 + panY - scale * (frame.minY + frame.maxY) / 2;
+        // A third of the mean distance between profiles, which is about one unit in a sparse layout
+        double spacing = Math.min(1, Math.sqrt(Math.max(1, frame.maxX - frame.minX)
+            * Math.max(1, frame.maxY - frame.minY) / frame.size()));
+        double radius = Math.max(1, Math.min(NODE_RADIUS, scale * spacing * 0.35));
         
-        for (int i = 0; i < profiles.size(); i++) {
-            for (int j = i + 1; j < profiles.size(); j++) {
-                Profile p1 = profiles.get(i);
-                Profile p2 = profiles.get(j);
-                
-                if (network != null && network.searchFriend(p1, p2)) {
-                    Point2D.Double pos1 = nodePositions.get(p1);
-                    Point2D.Double pos2 = nodePositions.get(p2);
-                    
-                    if (pos1 != null && pos2 != null) {
-                        Line2D.Double line = new Line2D.Double(pos1.x, pos1.y, pos2.x, pos2.y);
-                        g2d.draw(line);
-                    }
+        findVisible(frame, radius);
+        paintEdges(g2d, frame, radius);
+        paintNodes(g2d, frame, radius);
+    }
+    
+    // Collect the profiles whose node overlaps the panel
+    private void findVisible(ForceLayout.Frame frame, double radius) {
+        if (inView.length < frame.size()) {
+            inView = new int[frame.size()];
+            visible = new int[frame.size()];
+        }
+        if (++paintCount == 0) {
+            Arrays.fill(inView, 0);
+            paintCount = 1;
+        }
+        visibleCount = 0;
+        double margin = radius + 2;
+        frame.forEachIn((-margin - originX) / scale, (-margin - originY) / scale,
+            (getWidth() + margin - originX) / scale, (getHeight() + margin - originY) / scale, i -> {
+                inView[i] = paintCount;
+                visible[visibleCount++] = i;
+            });
+    }
+    
+    private void paintEdges(Graphics2D g2d, ForceLayout.Frame frame, double radius) {
+        int marginX = (int) Math.ceil(getWidth() * EDGE_MARGIN);
+        int marginY = (int) Math.ceil(getHeight() * EDGE_MARGIN);
+        if (edgeLayer == null || edgeLayer.getWidth() != getWidth() + 2 * marginX
+                || edgeLayer.getHeight() != getHeight() + 2 * marginY) {
+            edgeLayer = new BufferedImage(getWidth() + 2 * marginX, getHeight() + 2 * marginY,
+                BufferedImage.TYPE_INT_ARGB);
+            edgeMarginX = marginX;
+            edgeMarginY = marginY;
+            edgeFrame = null;
+        }
+        // A pan within the margin only moves the image
+        long dx = Math.round(originX - edgeOriginX);
+        long dy = Math.round(originY - edgeOriginY);
+        if (edgeFrame != frame || edgeScale != scale || Math.abs(dx) > marginX || Math.abs(dy) > marginY) {
+            drawEdgeLayer(frame, radius);
+            dx = 0;
+            dy = 0;
+        }
+        g2d.drawImage(edgeLayer, (int) dx - edgeMarginX, (int) dy - edgeMarginY, null);
+    }
+    
+    // Redraw the edge layer for the current frame and view
+    private void drawEdgeLayer(ForceLayout.Frame frame, double radius) {
+        findInLayer(frame, radius);
+        Graphics2D layer = edgeLayer.createGraphics();
+        layer.setComposite(AlphaComposite.Clear);
+        layer.fillRect(0, 0, edgeLayer.getWidth(), edgeLayer.getHeight());
+        layer.setComposite(AlphaComposite.SrcOver);
+        long edges = 0;
+        for (int k = 0; k < inLayerCount; k++) {
+            edges += frame.degree(inLayer[k]);
+        }
+        layer.setRenderingHint(RenderingHints.KEY_ANTIALIASING, edges <= ANTIALIAS_EDGES
+            ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+        layer.setColor(EDGE_COLOR);
+        layer.setStroke(edges <= ANTIALIAS_EDGES && radius >= DETAIL_RADIUS ? THICK_STROKE : THIN_STROKE);
+        
+        // Each friendship once: from its smaller end if both ends are in the layer, else from the one that is
+        double x0 = edgeMarginX + originX;
+        double y0 = edgeMarginY + originY;
+        for (int k = 0; k < inLayerCount; k++) {
+            int u = inLayer[k];
+            for (int e = frame.offsets[u]; e < frame.offsets[u + 1]; e++) {
+                int v = frame.targets[e];
+                if (v > u || layerMark[v] != layerCount) {
+                    line.setLine(x0 + scale * frame.x[u], y0 + scale * frame.y[u],
+                        x0 + scale * frame.x[v], y0 + scale * frame.y[v]);
+                    layer.draw(line);
                 }
             }
         }
+        layer.dispose();
+        edgeFrame = frame;
+        edgeScale = scale;
+        edgeOriginX = originX;
+        edgeOriginY = originY;
+    }
+    
+    // Collect the profiles whose node overlaps the edge layer, i.e. the panel and its margin
+    private void findInLayer(ForceLayout.Frame frame, double radius) {
+        if (layerMark.length < frame.size()) {
+            layerMark = new int[frame.size()];
+            inLayer = new int[frame.size()];
+        }
+        if (++layerCount == 0) {
+            Arrays.fill(layerMark, 0);
+            layerCount = 1;
+        }
+        inLayerCount = 0;
+        double marginX = edgeMarginX + radius + 2;
+        double marginY = edgeMarginY + radius + 2;
+        frame.forEachIn((-marginX - originX) / scale, (-marginY - originY) / scale,
+            (getWidth() + marginX - originX) / scale, (getHeight() + marginY - originY) / scale, i -> {
+                layerMark[i] = layerCount;
+                inLayer[inLayerCount++] = i;
+            });
+    }
+    
+    private void paintNodes(Graphics2D g2d, ForceLayout.Frame frame, double radius) {
+        if (radius < DETAIL_RADIUS || visibleCount > DETAIL_NODES) {
+            BufferedImage[] sprites = sprites(radius);
+            int offset = sprites[0].getWidth() / 2;
+            for (int k = 0; k < visibleCount; k++) {
+                int i = visible[k];
+                g2d.drawImage(sprites[colorIndex(frame.degree(i))], (int) Math.round(originX + scale * frame.x[i]) - offset,
+                    (int) Math.round(originY + scale * frame.y[i]) - offset, null);
+            }
+            return;
+        }
         
-        // Draw nodes (profiles)
-        for (Profile profile : profiles) {
-            Point2D.Double pos = nodePositions.get(profile);
-            if (pos != null) {
-                BufferedImage image = profileImages.getOrDefault(profile, null);
-                
-                if (image != null) {
-                    // Draw profile image
-                    g2d.drawImage(image, (int) (pos.x - NODE_RADIUS), (int) (pos.y - NODE_RADIUS), NODE_RADIUS * 2, NODE_RADIUS * 2, null);
-                    
-                    // Draw border around image
-                    g2d.setColor(Color.BLACK);
-                    g2d.setStroke(new BasicStroke(2));
-                    Ellipse2D.Double border = new Ellipse2D.Double(
-                        pos.x - NODE_RADIUS, pos.y - NODE_RADIUS, 
-                        NODE_RADIUS * 2, NODE_RADIUS * 2
-                    );
-                    g2d.draw(border);
-                } else {
-                    // Draw node circle
-                    Ellipse2D.Double circle = new Ellipse2D.Double(
-                        pos.x - NODE_RADIUS, pos.y - NODE_RADIUS, 
-                        NODE_RADIUS * 2, NODE_RADIUS * 2
-                    );
-                    
-                    // Color based on number of friends
-                    int friendCount = 0;
-                    if (network != null) {
-                        friendCount = network.allFriends(profile).size();
-                    }
-                    
-                    Color nodeColor;
-                    if (friendCount == 0) {
-                        nodeColor = new Color(255, 200, 200); // Light red for isolated nodes
-                    } else if (friendCount <= 2) {
-                        nodeColor = new Color(200, 255, 200); // Light green for few friends
-                    } else {
-                        nodeColor = new Color(200, 200, 255); // Light blue for many friends
-                    }
-                    
-                    g2d.setColor(nodeColor);
-                    g2d.fill(circle);
-                    
-                    // Draw border
-                    g2d.setColor(Color.BLACK);
-                    g2d.setStroke(new BasicStroke(2));
-                    g2d.draw(circle);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setStroke(THICK_STROKE);
+        g2d.setFont(LABEL_FONT);
+        FontMetrics fm = g2d.getFontMetrics();
+        int size = (int) Math.round(radius * 2);
+        for (int k = 0; k < visibleCount; k++) {
+            int i = visible[k];
+            double px = originX + scale * frame.x[i];
+            double py = originY + scale * frame.y[i];
+            Profile profile = frame.profiles[i];
+            circle.setFrame(px - radius, py - radius, radius * 2, radius * 2);
+            BufferedImage image = imageCache.get(profile.getProfileImage(), ProfileImageCache.Shape.CIRCLE,
+                NODE_RADIUS * 2, loaded -> repaint());
+            if (image != null) {
+                // Draw profile image, loaded at full size and scaled down
+                g2d.drawImage(image, (int) (px - radius), (int) (py - radius), size, size, null);
+            } else {
+                // Color based on number of friends
+                g2d.setColor(NODE_COLORS[colorIndex(frame.degree(i))]);
+                g2d.fill(circle);
+            }
+            
+            // Draw border
+            g2d.setColor(Color.BLACK);
+            g2d.draw(circle);
+            
+            // Draw username
+            String username = profile.getUsername();
+            int textX = (int) (px - fm.stringWidth(username) / 2);
+            int textY = (int) (py + radius + fm.getAscent() + 5);
+            g2d.drawString(username, textX, textY);
+        }
+    }
+    
+    // Images of a plain node in each color, redrawn when the radius changes
+    private BufferedImage[] sprites(double radius) {
+        if (sprites == null || spriteRadius != radius) {
+            int size = 2 * (int) Math.ceil(radius + 1);
+            Ellipse2D.Double shape = new Ellipse2D.Double(size / 2.0 - radius, size / 2.0 - radius, radius * 2, radius * 2);
+            sprites = new BufferedImage[NODE_COLORS.length];
+            for (int c = 0; c < NODE_COLORS.length; c++) {
+                sprites[c] = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+                Graphics2D g = sprites[c].createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g.setColor(NODE_COLORS[c]);
+                g.fill(shape);
+                if (radius >= DOT_RADIUS) {
+                    g.setColor(Color.BLACK);
+                    g.setStroke(THIN_STROKE);
+                    g.draw(shape);
                 }
-                
-                // Draw username
-                g2d.setColor(Color.BLACK);
-                g2d.setFont(new Font("Arial", Font.BOLD, 10));
-                String username = profile.getUsername();
-                FontMetrics fm = g2d.getFontMetrics();
-                int textX = (int) (pos.x - fm.stringWidth(username) / 2);
-                int textY = (int) (pos.y + NODE_RADIUS + fm.getAscent() + 5);
-                g2d.drawString(username, textX, textY);
+                g.dispose();
             }
+            spriteRadius = radius;
         }
+        return sprites;
     }
     
-    @Override
-    public void setPreferredSize(Dimension preferredSize) {
-        super.setPreferredSize(preferredSize);
-        calculateNodePositions();
+    private static int colorIndex(int friendCount) {
+        if (friendCount == 0) {
+            return 0;
+        } else if (friendCount <= 2) {
+            return 1;
+        } else {
+            return 2;
+        }
     }
-} 
\ No newline at end of file
+}
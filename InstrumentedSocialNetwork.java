@@ -0,0 +1,383 @@
+package src.graph;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * SocialNetwork that measures its own operations.
+ *
+ * Every call of searchFriend, allFriends, mutualFriendCount, suggestFriends, shortestPath, addProfile,
+ * addFriend, addFriends, removeFriend and removeProfile is timed into a LatencyHistogram per operation,
+ * whose count doubles as the call counter; addProfile calls that had to grow the adjacency are also
+ * recorded under "addProfileResize". Edge moves done inside removeProfile() count towards
+ * removeProfile only. Gauges give the profile and friendship counts, the adjacency capacity and its
+ * bytesUsed().
+ *
+ * Instrumentation is opt-in by choosing this class: a plain SocialNetwork has none of it and pays
+ * nothing. Here each call costs two System.nanoTime() reads and a histogram update.
+ *
+ * The metrics can be read from any thread while the network is in use: through operation() and
+ * the gauge methods, as JMX MXBeans after registerMBeans(), or in the Prometheus text format from
+ * writeMetrics(), which SocialNetworkServer serves at /metrics. The network itself is still
+ * single-writer like any SocialNetwork.
+ */
+public class InstrumentedSocialNetwork extends SocialNetwork {
+    // Recompute bytesUsed() at most this often unless the capacity changes; for sparse storage it
+    // walks every row
+    private static final long BYTES_REFRESH_NANOS = 1_000_000_000L;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final LatencyHistogram searchFriend = new LatencyHistogram();
+    private final LatencyHistogram allFriends = new LatencyHistogram();
+    private final LatencyHistogram mutualFriendCount = new LatencyHistogram();
+    private final LatencyHistogram suggestFriends = new LatencyHistogram();
+    private final LatencyHistogram shortestPath = new LatencyHistogram();
+    private final LatencyHistogram addProfile = new LatencyHistogram();
+    private final LatencyHistogram addProfileResize = new LatencyHistogram();
+    private final LatencyHistogram addFriend = new LatencyHistogram();
+    private final LatencyHistogram addFriends = new LatencyHistogram();
+    private final LatencyHistogram removeFriend = new LatencyHistogram();
+    private final LatencyHistogram removeProfile = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> operations = new LinkedHashMap<>();
+
+    // Gauges, written by the network's thread after each change
+    private volatile int profileCount;
+    private volatile long friendships;
+    private volatile int capacity;
+    private volatile long bytesUsed;
+    private long bytesUpdatedAt;
+
+    // Set while removeProfile() moves edges through addFriend()/removeFriend()
+    private boolean removing;
+    private final ArrayList<ObjectName> registered = new ArrayList<>();
+
+    public InstrumentedSocialNetwork(ArrayList<Profile> profiles) {
+        this(profiles, new IntMatrixAdjacency(profiles.size()));
+    }
+
+    /**
+     * @param profiles profiles to start with
+     * @param adjacency empty edge storage
+     */
+    public InstrumentedSocialNetwork(ArrayList<Profile> profiles, Adjacency adjacency) {
+        // The superclass constructor would call addProfile() before the histograms exist
+        super(new ArrayList<>(), adjacency);
+        operations.put("searchFriend", searchFriend);
+        operations.put("allFriends", allFriends);
+        operations.put("mutualFriendCount", mutualFriendCount);
+        operations.put("suggestFriends", suggestFriends);
+        operations.put("shortestPath", shortestPath);
+        operations.put("addProfile", addProfile);
+        operations.put("addProfileResize", addProfileResize);
+        operations.put("addFriend", addFriend);
+        operations.put("addFriends", addFriends);
+        operations.put("removeFriend", removeFriend);
+        operations.put("removeProfile", removeProfile);
+        addProfiles(profiles);
+        updateGauges();
+    }
+
+    /**
+     * Latency histogram of the named operation (see the class comment), or null if there is none.
+     */
+    public LatencyHistogram operation(String name) {
+        return operations.get(name);
+    }
+
+    public int profileCountGauge() {
+        return profileCount;
+    }
+
+    public long friendshipCountGauge() {
+        return friendships;
+    }
+
+    public int capacityGauge() {
+        return capacity;
+    }
+
+    /**
+     * adjacency().bytesUsed() as of the last change, refreshed at most once a second unless the capacity
+     * changed.
+     */
+    public long bytesUsedGauge() {
+        return bytesUsed;
+    }
+
+    @Override
+    public boolean searchFriend(int primaryUser, int friendLookup) {
+        long start = System.nanoTime();
+        boolean result = super.searchFriend(primaryUser, friendLookup);
+        searchFriend.record(System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public ArrayList<Profile> allFriends(int primaryUser) {
+        long start = System.nanoTime();
+        ArrayList<Profile> result = super.allFriends(primaryUser);
+        allFriends.record(System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public int mutualFriendCount(int primaryUser, int other) {
+        long start = System.nanoTime();
+        int result = super.mutualFriendCount(primaryUser, other);
+        mutualFriendCount.record(System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public int[] suggestFriends(int primaryUser, int k) {
+        long start = System.nanoTime();
+        int[] result = super.suggestFriends(primaryUser, k);
+        suggestFriends.record(System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public int[] shortestPath(int from, int to) {
+        long start = System.nanoTime();
+        int[] result = super.shortestPath(from, to);
+        shortestPath.record(System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public void addProfile(Profile newProfile) {
+        int oldCapacity = capacity();
+        long start = System.nanoTime();
+        super.addProfile(newProfile);
+        long elapsed = System.nanoTime() - start;
+        addProfile.record(elapsed);
+        if (capacity() != oldCapacity) {
+            addProfileResize.record(elapsed);
+        }
+        updateGauges();
+    }
+
+    @Override
+    public void addFriend(int primaryUser, int friend) {
+        if (removing) {
+            super.addFriend(primaryUser, friend);
+            return;
+        }
+        long start = System.nanoTime();
+        super.addFriend(primaryUser, friend);
+        addFriend.record(System.nanoTime() - start);
+        updateGauges();
+    }
+
+    @Override
+    public BatchResult addFriends(Iterable<Profile[]> pairs) {
+        long start = System.nanoTime();
+        BatchResult result = super.addFriends(pairs);
+        addFriends.record(System.nanoTime() - start);
+        updateGauges();
+        return result;
+    }
+
+    @Override
+    public BatchResult addFriends(int[] primaryUsers, int[] friends) {
+        long start = System.nanoTime();
+        BatchResult result = super.addFriends(primaryUsers, friends);
+        addFriends.record(System.nanoTime() - start);
+        updateGauges();
+        return result;
+    }
+
+    @Override
+    public void removeFriend(int primaryUser, int friend) {
+        if (removing) {
+            super.removeFriend(primaryUser, friend);
+            return;
+        }
+        long start = System.nanoTime();
+        super.removeFriend(primaryUser, friend);
+        removeFriend.record(System.nanoTime() - start);
+        updateGauges();
+    }
+
+    @Override
+    public boolean removeProfile(Profile profile) {
+        long start = System.nanoTime();
+        boolean result;
+        removing = true;
+        try {
+            result = super.removeProfile(profile);
+        } finally {
+            removing = false;
+        }
+        removeProfile.record(System.nanoTime() - start);
+        updateGauges();
+        return result;
+    }
+
+    private void updateGauges() {
+        profileCount = size();
+        friendships = friendshipCount();
+        long now = System.nanoTime();
+        if (capacity() != capacity || now - bytesUpdatedAt > BYTES_REFRESH_NANOS) {
+            capacity = capacity();
+            bytesUsed = adjacency().bytesUsed();
+            bytesUpdatedAt = now;
+        }
+    }
+
+    /** JMX view of one operation's latency histogram. Durations are in nanoseconds. */
+    public interface OperationMXBean {
+        long getCount();
+
+        double getMean();
+
+        long getMax();
+
+        long get50thPercentile();
+
+        long get99thPercentile();
+
+        long get999thPercentile();
+    }
+
+    /** JMX view of the gauges. */
+    public interface GaugesMXBean {
+        int getProfileCount();
+
+        long getFriendshipCount();
+
+        int getCapacity();
+
+        long getBytesUsed();
+    }
+
+    /**
+     * Register the gauges as src.graph:type=SocialNetwork,name=name and each operation as
+     * src.graph:type=SocialNetwork,name=name,operation=op with the platform MBean server.
+     *
+     * @throws IllegalStateException if MBeans with these names are already registered
+     */
+    public void registerMBeans(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        int first = registered.size();
+        try {
+            register(server, new ObjectName("src.graph:type=SocialNetwork,name=" + ObjectName.quote(name)),
+                new GaugesMXBean() {
+                    public int getProfileCount() {
+                        return profileCountGauge();
+                    }
+
+                    public long getFriendshipCount() {
+                        return friendshipCountGauge();
+                    }
+
+                    public int getCapacity() {
+                        return capacityGauge();
+                    }
+
+                    public long getBytesUsed() {
+                        return bytesUsedGauge();
+                    }
+                });
+            for (Map.Entry<String, LatencyHistogram> entry : operations.entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                register(server, new ObjectName("src.graph:type=SocialNetwork,name=" + ObjectName.quote(name)
+                    + ",operation=" + entry.getKey()), new OperationMXBean() {
+                        public long getCount() {
+                            return histogram.count();
+                        }
+
+                        public double getMean() {
+                            return histogram.mean();
+                        }
+
+                        public long getMax() {
+                            return histogram.max();
+                        }
+
+                        public long get50thPercentile() {
+                            return histogram.percentile(0.5);
+                        }
+
+                        public long get99thPercentile() {
+                            return histogram.percentile(0.99);
+                        }
+
+                        public long get999thPercentile() {
+                            return histogram.percentile(0.999);
+                        }
+                    });
+            }
+        } catch (JMException e) {
+            unregister(server, first);
+            throw new IllegalStateException("Could not register the MBeans for '" + name + "'", e);
+        }
+    }
+
+    private void register(MBeanServer server, ObjectName objectName, Object bean) throws JMException {
+        server.registerMBean(bean, objectName);
+        registered.add(objectName);
+    }
+
+    /**
+     * Remove the MBeans added by registerMBeans().
+     */
+    public void unregisterMBeans() {
+        unregister(ManagementFactory.getPlatformMBeanServer(), 0);
+    }
+
+    // Unregister the MBeans from registered.get(first) on
+    private void unregister(MBeanServer server, int first) {
+        while (registered.size() > first) {
+            try {
+                server.unregisterMBean(registered.remove(registered.size() - 1));
+            } catch (JMException e) {
+                // Already gone
+            }
+        }
+    }
+
+    /**
+     * Write the metrics in the Prometheus text exposition format (version 0.0.4): a summary
+     * socialnetwork_operation_seconds with an operation label and the 0.5, 0.9, 0.99 and 0.999 quantiles
+     * (NaN for operations never called), and one gauge per gauge method.
+     */
+    public void writeMetrics(Appendable out) throws IOException {
+        out.append("# HELP socialnetwork_operation_seconds Latency of SocialNetwork operations.\n");
+        out.append("# TYPE socialnetwork_operation_seconds summary\n");
+        for (Map.Entry<String, LatencyHistogram> entry : operations.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            long count = histogram.count();
+            String label = "operation=\"" + entry.getKey() + "\"";
+            for (double q : QUANTILES) {
+                out.append("socialnetwork_operation_seconds{").append(label).append(",quantile=\"")
+                    .append(Double.toString(q)).append("\"} ")
+                    .append(count == 0 ? "NaN" : seconds(histogram.percentile(q))).append('\n');
+            }
+            out.append("socialnetwork_operation_seconds_sum{").append(label).append("} ")
+                .append(seconds(histogram.sum())).append('\n');
+            out.append("socialnetwork_operation_seconds_count{").append(label).append("} ")
+                .append(Long.toString(count)).append('\n');
+        }
+        gauge(out, "socialnetwork_profiles", "Number of profiles.", profileCountGauge());
+        gauge(out, "socialnetwork_friendships", "Number of friendships.", friendshipCountGauge());
+        gauge(out, "socialnetwork_capacity", "Profiles the adjacency can hold without growing.", capacityGauge());
+        gauge(out, "socialnetwork_adjacency_bytes", "Approximate heap footprint of the adjacency.", bytesUsedGauge());
+    }
+
+    private static void gauge(Appendable out, String name, String help, long value) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(Long.toString(value)).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
@@ -0,0 +1,10 @@
+package src.graph;
+
+/**
+ * Callback taking two ints, used to visit edges as (u, v) vertex id pairs without boxing.
+ */
+@FunctionalInterface
+public interface IntIntConsumer {
+
+    void accept(int u, int v);
+}
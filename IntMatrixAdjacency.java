@@ -0,0 +1,206 @@
+package src.graph;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Adjacency matrix stored as an int[][] of 0s and 1s.
+ *
+ * This is the representation described in the README. Lookups are a single array read, but every
+ * cell costs 4 bytes and degree()/forEachNeighbor() scan the whole row.
+ *
+ * snapshot() shares the rows with the snapshot instead of copying them, and a row is copied the first
+ * time it changes after a snapshot, so later changes never show through.
+ */
+public class IntMatrixAdjacency implements Adjacency {
+    private int[][] matrix;
+    private int size;
+    // Number of snapshots taken, and for each row the value it had when the row was last copied
+    private int version;
+    private int[] rowVersions;
+    private final boolean readOnly;
+
+    public IntMatrixAdjacency() {
+        this(0);
+    }
+
+    /**
+     * @param initialCapacity number of vertices to allocate room for
+     */
+    public IntMatrixAdjacency(int initialCapacity) {
+        this.matrix = new int[initialCapacity][initialCapacity];
+        this.rowVersions = new int[initialCapacity];
+        this.readOnly = false;
+    }
+
+    // A snapshot, sharing rows with the adjacency it was taken from
+    private IntMatrixAdjacency(int[][] matrix, int size) {
+        this.matrix = matrix;
+        this.size = size;
+        this.readOnly = true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return matrix.length;
+    }
+
+    @Override
+    public void reserve(int minCapacity) {
+        checkWritable();
+        if (minCapacity > matrix.length) {
+            resize(minCapacity);
+        }
+    }
+
+    @Override
+    public void grow(int newSize) {
+        checkWritable();
+        if (newSize > matrix.length) {
+            resize(Math.max(newSize, matrix.length * 2));
+        }
+        size = Math.max(size, newSize);
+    }
+
+    /**
+     * Copy the first size rows and columns into a new newCapacity by newCapacity matrix.
+     */
+    private void resize(int newCapacity) {
+        int[][] resized = new int[newCapacity][newCapacity];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(matrix[i], 0, resized[i], 0, size);
+        }
+        this.matrix = resized;
+        // Every row is new
+        this.rowVersions = new int[newCapacity];
+        Arrays.fill(rowVersions, version);
+    }
+
+    @Override
+    public void truncate(int newSize) {
+        checkWritable();
+        size = Math.min(size, newSize);
+    }
+
+    @Override
+    public boolean contains(int row, int col) {
+        return matrix[row][col] == 1;
+    }
+
+    @Override
+    public boolean add(int row, int col) {
+        checkWritable();
+        if (matrix[row][col] == 1) {
+            return false;
+        }
+        writableRow(row)[col] = 1;
+        return true;
+    }
+
+    @Override
+    public boolean remove(int row, int col) {
+        checkWritable();
+        if (matrix[row][col] == 0) {
+            return false;
+        }
+        writableRow(row)[col] = 0;
+        return true;
+    }
+
+    @Override
+    public int degree(int row) {
+        int[] r = matrix[row];
+        int count = 0;
+        for (int j = 0; j < size; j++) {
+            count += r[j];
+        }
+        return count;
+    }
+
+    @Override
+    public void forEachNeighbor(int row, IntConsumer action) {
+        int[] r = matrix[row];
+        for (int j = 0; j < size; j++) {
+            if (r[j] == 1) {
+                action.accept(j);
+            }
+        }
+    }
+
+    @Override
+    public boolean anyNeighbor(int row, IntPredicate predicate) {
+        int[] r = matrix[row];
+        for (int j = 0; j < size; j++) {
+            if (r[j] == 1 && predicate.test(j)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int nextNeighbor(int row, int from) {
+        int[] r = matrix[row];
+        for (int j = Math.max(0, from); j < size; j++) {
+            if (r[j] == 1) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void forEachEdge(IntIntConsumer action) {
+        for (int u = 0; u < size; u++) {
+            int[] r = matrix[u];
+            for (int v = u + 1; v < size; v++) {
+                if (r[v] == 1) {
+                    action.accept(u, v);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Adjacency snapshot() {
+        if (readOnly) {
+            return this;
+        }
+        version++;
+        return new IntMatrixAdjacency(Arrays.copyOf(matrix, size), size);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // Row row, copied first if a snapshot may share it
+    private int[] writableRow(int row) {
+        int[] r = matrix[row];
+        if (rowVersions[row] != version) {
+            r = r.clone();
+            matrix[row] = r;
+            rowVersions[row] = version;
+        }
+        return r;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("IntMatrixAdjacency snapshot is read-only");
+        }
+    }
+
+    @Override
+    public long bytesUsed() {
+        long cap = matrix.length;
+        return 16 + 4 * cap + cap * (16 + 4 * cap);
+    }
+}
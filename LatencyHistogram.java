@@ -0,0 +1,117 @@
+package src.graph;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, for recording operation latencies from any number
+ * of threads.
+ *
+ * Buckets are log-linear as in HdrHistogram: values below 64 get a bucket each, and every power of two
+ * above that is split into 32 equal buckets, so a percentile is off by at most 1/32 (about 3%) of the
+ * value. The 1,888 buckets cover every long, so nothing is ever clipped. record() increments one bucket
+ * and one adder and allocates nothing (apart from the adder growing its cells the first few times
+ * threads collide); count() and the percentiles are computed from the buckets when asked for.
+ *
+ * Reads are not atomic with respect to concurrent record() calls: a percentile computed while values
+ * are being recorded reflects some of them and not others.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BITS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record one duration. Negative values count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulate(value);
+        }
+    }
+
+    /**
+     * Number of recorded values.
+     */
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Sum of all recorded values in nanoseconds.
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * Largest recorded value in nanoseconds, exact; 0 if nothing was recorded.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = count();
+        return n == 0 ? 0 : (double) sum() / n;
+    }
+
+    /**
+     * Value below or at which the given fraction of recorded values fall, e.g. 0.99 for the 99th
+     * percentile. Reported as the largest value of its bucket, but never above max(); 0 if nothing was
+     * recorded.
+     *
+     * @param quantile fraction between 0 and 1
+     */
+    public long percentile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(i + 1 < BUCKETS ? lowestValue(i + 1) - 1 : Long.MAX_VALUE, max());
+            }
+        }
+        return max();
+    }
+
+    // Values below 2 * SUB_BUCKETS map to themselves. Above that, a value with highest bit e keeps its
+    // top SUB_BITS + 1 bits: shift = e - SUB_BITS, and bucket = SUB_BUCKETS * shift + (value >>> shift).
+    static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return SUB_BUCKETS * shift + (int) (value >>> shift);
+    }
+
+    // Smallest value that falls into bucket
+    static long lowestValue(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+}
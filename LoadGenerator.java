@@ -0,0 +1,222 @@
+package src.graph;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives a SocialNetworkServer with concurrent clients and reports latency and throughput per endpoint.
+ *
+ * Usage:
+ * <pre>
+ *   java src.graph.LoadGenerator [http://localhost:8080] [profiles] [friends per profile] [clients] [seconds]
+ * </pre>
+ * Defaults: 10000 profiles, 20 friends each, 64 clients, 10 seconds. The run has two phases:
+ * <ol>
+ *   <li>seed: the clients create the profiles and then random friendships, as fast as the server takes
+ *       them;</li>
+ *   <li>mixed: for the given time each client sends requests back to back, 40% search-friend, 25%
+ *       list-friends, 20% suggestions and 15% add-friend, between random seeded profiles.</li>
+ * </ol>
+ * Every client is one thread from VirtualThreads.newPerTaskExecutor() with blocking HttpClient calls.
+ * Usernames get a per-run prefix, so runs against the same server do not collide. Latency is measured
+ * from sending a request until its response body has been read.
+ */
+public class LoadGenerator {
+    private static final String[] OPERATIONS = {"create-profile", "add-friend", "search-friend", "list-friends", "suggestions"};
+    private static final int CREATE_PROFILE = 0;
+    private static final int ADD_FRIEND = 1;
+    private static final int SEARCH_FRIEND = 2;
+    private static final int LIST_FRIENDS = 3;
+    private static final int SUGGESTIONS = 4;
+
+    private final String baseUrl;
+    private final HttpClient client;
+    private final String prefix = "load" + Long.toString(System.nanoTime() & 0xffffffL, 36) + "_";
+    private final int profiles;
+
+    private LoadGenerator(String baseUrl, int profiles, ExecutorService executor) {
+        this.baseUrl = baseUrl;
+        this.profiles = profiles;
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor).build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080";
+        int profiles = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int friends = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int clients = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor("load");
+        LoadGenerator load = new LoadGenerator(url, profiles, executor);
+
+        AtomicInteger nextProfile = new AtomicInteger();
+        report("seed: profiles", load.run(executor, clients, Long.MAX_VALUE, (stats, random) -> {
+            int i = nextProfile.getAndIncrement();
+            if (i >= profiles) {
+                return false;
+            }
+            load.post(stats, CREATE_PROFILE, "/profiles", "username", load.username(i), "name", "User " + i);
+            return true;
+        }));
+
+        AtomicInteger nextFriendship = new AtomicInteger();
+        long friendships = (long) profiles * friends / 2;
+        report("seed: friendships", load.run(executor, clients, Long.MAX_VALUE, (stats, random) -> {
+            if (nextFriendship.getAndIncrement() >= friendships) {
+                return false;
+            }
+            load.addRandomFriend(stats, random);
+            return true;
+        }));
+
+        report("mixed", load.run(executor, clients, seconds * 1_000_000_000L, (stats, random) -> {
+            int dice = random.nextInt(100);
+            String user = load.username(random.nextInt(profiles));
+            if (dice < 40) {
+                load.get(stats, SEARCH_FRIEND, "/friendship", "user", user, "friend", load.username(random.nextInt(profiles)));
+            } else if (dice < 65) {
+                load.get(stats, LIST_FRIENDS, "/friends", "user", user);
+            } else if (dice < 85) {
+                load.get(stats, SUGGESTIONS, "/suggestions", "user", user, "k", "10");
+            } else {
+                load.addRandomFriend(stats, random);
+            }
+            return true;
+        }));
+        executor.shutdownNow();
+    }
+
+    private String username(int i) {
+        return prefix + i;
+    }
+
+    private void addRandomFriend(Stats stats, ThreadLocalRandom random) throws IOException, InterruptedException {
+        int u = random.nextInt(profiles);
+        int v = random.nextInt(profiles - 1);
+        v = v >= u ? v + 1 : v;
+        post(stats, ADD_FRIEND, "/friends", "user", username(u), "friend", username(v));
+    }
+
+    private void get(Stats stats, int operation, String path, String... params) throws IOException, InterruptedException {
+        send(stats, operation, HttpRequest.newBuilder(URI.create(baseUrl + path + "?" + form(params))).GET().build());
+    }
+
+    private void post(Stats stats, int operation, String path, String... params) throws IOException, InterruptedException {
+        send(stats, operation, HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form(params)))
+            .build());
+    }
+
+    private void send(Stats stats, int operation, HttpRequest request) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        stats.record(operation, System.nanoTime() - start, response.statusCode() < 400);
+    }
+
+    private static String form(String... params) {
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i < params.length; i += 2) {
+            if (i > 0) {
+                form.append('&');
+            }
+            form.append(URLEncoder.encode(params[i], StandardCharsets.UTF_8)).append('=')
+                .append(URLEncoder.encode(params[i + 1], StandardCharsets.UTF_8));
+        }
+        return form.toString();
+    }
+
+    private interface Step {
+        // Send one request; false when there is nothing left to send
+        boolean run(Stats stats, ThreadLocalRandom random) throws IOException, InterruptedException;
+    }
+
+    // Run step on clients threads until it returns false or maxNanos have passed, and merge their stats
+    private Stats run(ExecutorService executor, int clients, long maxNanos, Step step) throws Exception {
+        ArrayList<Future<Stats>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            futures.add(executor.submit(() -> {
+                Stats stats = new Stats();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() - start < maxNanos) {
+                    if (!step.run(stats, random)) {
+                        break;
+                    }
+                }
+                return stats;
+            }));
+        }
+        Stats total = new Stats();
+        for (Future<Stats> future : futures) {
+            total.add(future.get());
+        }
+        total.nanos = System.nanoTime() - start;
+        return total;
+    }
+
+    // Latencies of one client, or of all clients once merged, per operation
+    private static final class Stats {
+        final long[][] latencies = new long[OPERATIONS.length][16];
+        final int[] counts = new int[OPERATIONS.length];
+        final int[] errors = new int[OPERATIONS.length];
+        long nanos;
+
+        void record(int operation, long latency, boolean ok) {
+            if (counts[operation] == latencies[operation].length) {
+                latencies[operation] = Arrays.copyOf(latencies[operation], counts[operation] * 2);
+            }
+            latencies[operation][counts[operation]++] = latency;
+            if (!ok) {
+                errors[operation]++;
+            }
+        }
+
+        void add(Stats other) {
+            for (int op = 0; op < OPERATIONS.length; op++) {
+                for (int i = 0; i < other.counts[op]; i++) {
+                    record(op, other.latencies[op][i], true);
+                }
+                errors[op] += other.errors[op];
+            }
+        }
+    }
+
+    private static void report(String phase, Stats stats) {
+        double seconds = stats.nanos / 1e9;
+        System.out.printf("%s (%.2f s)%n", phase, seconds);
+        System.out.printf("  %-16s %10s %12s %10s %10s %10s %8s%n", "endpoint", "requests", "req/s", "p50 ms",
+            "p99 ms", "max ms", "errors");
+        long all = 0;
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            int n = stats.counts[op];
+            if (n == 0) {
+                continue;
+            }
+            long[] sorted = Arrays.copyOf(stats.latencies[op], n);
+            Arrays.sort(sorted);
+            System.out.printf("  %-16s %,10d %,12.0f %10.3f %10.3f %10.3f %,8d%n", OPERATIONS[op], n, n / seconds,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[n - 1] / 1e6, stats.errors[op]);
+            all += n;
+        }
+        System.out.printf("  %-16s %,10d %,12.0f%n", "total", all, all / seconds);
+    }
+
+    // Nearest-rank percentile of sorted values
+    private static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
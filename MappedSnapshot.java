@@ -0,0 +1,534 @@
+package src.graph;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * A SocialNetwork saved in the binary snapshot format, memory-mapped and queried in place.
+ *
+ * Opening a snapshot only maps the file and checks its header, so it takes milliseconds whatever the
+ * size of the graph. Profile strings, friend lists and username lookups are then read straight from
+ * the mapped pages; nothing is copied to the heap unless asked for (see profiles()). Files over 2 GB
+ * are mapped in 1 GB chunks. Reads never change buffer positions, so a snapshot can be queried from
+ * any number of threads.
+ *
+ * File layout, big-endian, every section starting at a multiple of its element size:
+ * <pre>
+ *   0  "SNET"                  magic
+ *   4  int   version           VERSION
+ *   8  int   n                 number of profiles
+ *  12  int   0                 reserved
+ *  16  long  m                 number of neighbor entries, twice the friendships
+ *  24  long  stringBytes       size of the string data
+ *  32  long  sequence          last write-ahead log record included (version 2 on)
+ *  40  long[3n + 1]            string table: start of the username, name and image URL of each
+ *                              profile in the string data, plus the end of the last one
+ *      long[n + 1]             CSR offsets: the neighbors of i are entries offsets[i] to offsets[i + 1] - 1
+ *      int[n]                  profile ids sorted by the UTF-8 bytes of their username
+ *      int[m]                  neighbor ids, sorted within each profile
+ *      byte[stringBytes]       UTF-8 string data
+ * </pre>
+ * A profile without an image is stored with an empty image URL. Version 1 files, which have no
+ * sequence field and a 32 byte header, can still be opened.
+ */
+public class MappedSnapshot {
+    /** Format version written by write() and accepted by open(). */
+    public static final int VERSION = 2;
+
+    private static final byte[] MAGIC = { 'S', 'N', 'E', 'T' };
+    private static final int HEADER_BYTES = 40;
+    private static final int V1_HEADER_BYTES = 32;
+    private static final int CHUNK_BITS = 30;
+
+    private final ByteBuffer[] chunks;
+    private final int chunkBits;
+    private final long chunkMask;
+    private final int size;
+    private final long neighborCount;
+    private final long sequence;
+    private final long stringTable;
+    private final long csrOffsets;
+    private final long usernameOrder;
+    private final long neighbors;
+    private final long strings;
+    private final Adjacency adjacency = new MappedAdjacency();
+
+    private MappedSnapshot(ByteBuffer[] chunks, int chunkBits, long fileSize) throws IOException {
+        this.chunks = chunks;
+        this.chunkBits = chunkBits;
+        this.chunkMask = (1L << chunkBits) - 1;
+        if (fileSize < V1_HEADER_BYTES) {
+            throw new IOException("Not a social network snapshot");
+        }
+        byte[] magic = new byte[MAGIC.length];
+        read(0, magic, 0, magic.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a social network snapshot");
+        }
+        int version = getInt(4);
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        this.size = getInt(8);
+        this.neighborCount = getLong(16);
+        long stringBytes = getLong(24);
+        this.sequence = version == 1 ? 0 : getLong(32);
+        this.stringTable = version == 1 ? V1_HEADER_BYTES : HEADER_BYTES;
+        this.csrOffsets = stringTable + 8L * (3L * size + 1);
+        this.usernameOrder = csrOffsets + 8L * (size + 1);
+        this.neighbors = usernameOrder + 4L * size;
+        this.strings = neighbors + 4L * neighborCount;
+        if (size < 0 || neighborCount < 0 || strings + stringBytes != fileSize) {
+            throw new IOException("Corrupt snapshot: section sizes do not match the file size");
+        }
+    }
+
+    /**
+     * Map a snapshot file written by write() or SocialNetwork.save().
+     *
+     * @throws IOException if the file cannot be read or is not a snapshot of this version
+     */
+    public static MappedSnapshot open(Path file) throws IOException {
+        return open(file, CHUNK_BITS);
+    }
+
+    // chunkBits is only ever lowered to exercise chunk boundaries on small files
+    static MappedSnapshot open(Path file, int chunkBits) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long chunkSize = 1L << chunkBits;
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((fileSize + chunkSize - 1) >>> chunkBits)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << chunkBits;
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(chunkSize, fileSize - start));
+                chunks[i] = chunk;
+            }
+            // The mappings stay valid after the channel is closed
+            return new MappedSnapshot(chunks, chunkBits, fileSize);
+        }
+    }
+
+    /**
+     * Write the profiles and friendships of network to file in the snapshot format, with sequence 0.
+     *
+     * The data goes to a temporary file next to file, which is then renamed over it, so a crash
+     * leaves either the old or the new snapshot and never a partial one.
+     */
+    public static void write(SocialNetwork network, Path file) throws IOException {
+        write(network, file, 0);
+    }
+
+    /**
+     * Write a snapshot that includes every write-ahead log record up to and including sequence.
+     */
+    public static void write(SocialNetwork network, Path file, long sequence) throws IOException {
+        int n = network.size();
+        Adjacency edges = network.adjacency();
+        byte[][] text = new byte[3 * n][];
+        long stringBytes = 0;
+        for (int i = 0; i < n; i++) {
+            Profile p = network.getProfile(i);
+            text[3 * i] = utf8(p.getUsername());
+            text[3 * i + 1] = utf8(p.getName());
+            text[3 * i + 2] = utf8(p.getProfileImage());
+            stringBytes += text[3 * i].length + text[3 * i + 1].length + text[3 * i + 2].length;
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(text[3 * a], text[3 * b]));
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output out = new Output(channel);
+            out.put(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(n);
+            out.putInt(0);
+            out.putLong(2 * network.friendshipCount());
+            out.putLong(stringBytes);
+            out.putLong(sequence);
+            long position = 0;
+            for (byte[] s : text) {
+                out.putLong(position);
+                position += s.length;
+            }
+            out.putLong(position);
+            long offset = 0;
+            for (int i = 0; i < n; i++) {
+                out.putLong(offset);
+                offset += edges.degree(i);
+            }
+            out.putLong(offset);
+            for (Integer id : order) {
+                out.putInt(id);
+            }
+            for (int i = 0; i < n; i++) {
+                edges.forEachNeighbor(i, out::putInt);
+            }
+            for (byte[] s : text) {
+                out.put(s);
+            }
+            out.flush();
+            channel.force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Number of profiles.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of friendships (undirected edges).
+     */
+    public long friendshipCount() {
+        return neighborCount / 2;
+    }
+
+    /**
+     * Sequence number (LSN) of the last write-ahead log record the snapshot includes, 0 if none.
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    public String username(int id) {
+        return string(3L * id);
+    }
+
+    public String name(int id) {
+        return string(3L * id + 1);
+    }
+
+    /**
+     * Image URL of a profile, or null if it has none.
+     */
+    public String profileImage(int id) {
+        String url = string(3L * id + 2);
+        return url.isEmpty() ? null : url;
+    }
+
+    /**
+     * Vertex id of the profile with the given username, or -1 if there is none.
+     *
+     * Binary search over the sorted username section, so O(log n) reads of the mapped file.
+     */
+    public int indexOf(String username) {
+        byte[] key = utf8(username);
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = getInt(usernameOrder + 4L * mid);
+            int cmp = compareBytes(3L * id, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read-only view of the friendships, reading the mapped CSR arrays directly.
+     */
+    public Adjacency adjacency() {
+        return adjacency;
+    }
+
+    /**
+     * New Profile objects for every profile in the snapshot, in vertex id order.
+     */
+    public ArrayList<Profile> profiles() {
+        ArrayList<Profile> profiles = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            profiles.add(new Profile(username(i), name(i), profileImage(i)));
+        }
+        return profiles;
+    }
+
+    /**
+     * Add every profile in the snapshot to store, in vertex id order, and return views of them.
+     *
+     * The store reads the strings from this snapshot until they are changed, so nothing is decoded here.
+     */
+    public ArrayList<Profile> profiles(ProfileStore store) {
+        return store.add(this);
+    }
+
+    // Bytes of string number k of the string table
+    private byte[] bytes(long k) {
+        long start = getLong(stringTable + 8 * k);
+        long end = getLong(stringTable + 8 * (k + 1));
+        byte[] b = new byte[(int) (end - start)];
+        read(strings + start, b, 0, b.length);
+        return b;
+    }
+
+    // Compare string number k with key as unsigned bytes, like Arrays.compareUnsigned, without copying it
+    private int compareBytes(long k, byte[] key) {
+        long start = strings + getLong(stringTable + 8 * k);
+        int length = (int) (strings + getLong(stringTable + 8 * (k + 1)) - start);
+        for (int i = 0; i < length && i < key.length; i++) {
+            long position = start + i;
+            int cmp = Byte.compareUnsigned(chunks[(int) (position >>> chunkBits)].get((int) (position & chunkMask)),
+                key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    // String number k of the string table; ProfileStore reads the strings of its mapped rows with it
+    String string(long k) {
+        return new String(bytes(k), StandardCharsets.UTF_8);
+    }
+
+    // Sections are aligned to their element size and chunks are a power of two, so a long or int
+    // never spans two chunks. Only string bytes can.
+    private long getLong(long position) {
+        return chunks[(int) (position >>> chunkBits)].getLong((int) (position & chunkMask));
+    }
+
+    private int getInt(long position) {
+        return chunks[(int) (position >>> chunkBits)].getInt((int) (position & chunkMask));
+    }
+
+    private void read(long position, byte[] dst, int offset, int length) {
+        while (length > 0) {
+            int inChunk = (int) (position & chunkMask);
+            ByteBuffer chunk = chunks[(int) (position >>> chunkBits)];
+            int n = Math.min(length, chunk.limit() - inChunk);
+            chunk.get(inChunk, dst, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private long offset(int row) {
+        return getLong(csrOffsets + 8L * row);
+    }
+
+    private int neighbor(long k) {
+        return getInt(neighbors + 4 * k);
+    }
+
+    private class MappedAdjacency implements Adjacency {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int capacity() {
+            return size;
+        }
+
+        @Override
+        public void reserve(int minCapacity) {
+            throw new UnsupportedOperationException("MappedSnapshot is read-only");
+        }
+
+        @Override
+        public void grow(int newSize) {
+            throw new UnsupportedOperationException("MappedSnapshot is read-only");
+        }
+
+        @Override
+        public void truncate(int newSize) {
+            throw new UnsupportedOperationException("MappedSnapshot is read-only");
+        }
+
+        @Override
+        public boolean contains(int row, int col) {
+            long lo = offset(row);
+            long hi = offset(row + 1) - 1;
+            while (lo <= hi) {
+                long mid = (lo + hi) >>> 1;
+                int v = neighbor(mid);
+                if (v < col) {
+                    lo = mid + 1;
+                } else if (v > col) {
+                    hi = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean add(int row, int col) {
+            throw new UnsupportedOperationException("MappedSnapshot is read-only");
+        }
+
+        @Override
+        public boolean remove(int row, int col) {
+            throw new UnsupportedOperationException("MappedSnapshot is read-only");
+        }
+
+        @Override
+        public int degree(int row) {
+            return (int) (offset(row + 1) - offset(row));
+        }
+
+        @Override
+        public void forEachNeighbor(int row, IntConsumer action) {
+            long end = offset(row + 1);
+            for (long k = offset(row); k < end; k++) {
+                action.accept(neighbor(k));
+            }
+        }
+
+        @Override
+        public boolean anyNeighbor(int row, IntPredicate predicate) {
+            long end = offset(row + 1);
+            for (long k = offset(row); k < end; k++) {
+                if (predicate.test(neighbor(k))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int nextNeighbor(int row, int from) {
+            // Binary search for the first neighbor at least from
+            long lo = offset(row);
+            long hi = offset(row + 1);
+            long end = hi;
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                if (neighbor(mid) < from) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo < end ? neighbor(lo) : -1;
+        }
+
+        @Override
+        public void forEachCommonNeighbor(int a, int b, IntConsumer action) {
+            long i = offset(a);
+            long j = offset(b);
+            long endA = offset(a + 1);
+            long endB = offset(b + 1);
+            // Merge the two sorted rows
+            while (i < endA && j < endB) {
+                int x = neighbor(i);
+                int y = neighbor(j);
+                if (x <= y) {
+                    i++;
+                }
+                if (y <= x) {
+                    j++;
+                }
+                if (x == y) {
+                    action.accept(x);
+                }
+            }
+        }
+
+        /**
+         * Already read-only, so it is its own snapshot.
+         */
+        @Override
+        public Adjacency snapshot() {
+            return this;
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return true;
+        }
+
+        /**
+         * Mapped pages are not on the heap, so only the chunk table counts.
+         */
+        @Override
+        public long bytesUsed() {
+            return 16 + 8L * chunks.length;
+        }
+    }
+
+    // Buffered sequential writes to a FileChannel. Errors are unchecked so putInt() can be used as an
+    // IntConsumer; write() turns them back into IOException.
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void put(byte[] bytes) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int n = Math.min(bytes.length - offset, buffer.remaining());
+                buffer.put(bytes, offset, n);
+                offset += n;
+            }
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+        }
+    }
+}
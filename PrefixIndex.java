@@ -0,0 +1,273 @@
+package src.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Case-insensitive prefix search over the usernames and names of a SocialNetwork, for typeahead.
+ *
+ * Keys are kept in sorted arrays, one entry per username and one per word of each name (so "lov"
+ * finds "Ada Lovelace"). A query binary-searches the start of the prefix and reads the matches in
+ * order, so it costs O(log n + k) however many profiles match. Like GraphAnalytics, the index registers
+ * itself as a GraphListener and follows added, renamed and removed profiles. New keys are buffered
+ * and merged into the sorted arrays by the next query, so adding n profiles between two queries costs
+ * one O(n log n) merge rather than n array shifts.
+ *
+ * Like SocialNetwork this is not safe to use from several threads at once. Call close() to stop
+ * following the network.
+ */
+public class PrefixIndex {
+    private final SocialNetwork network;
+    private final GraphListener listener = new Updater();
+    private final SortedKeys usernames = new SortedKeys();
+    private final SortedKeys names = new SortedKeys();
+
+    /**
+     * Index the current profiles of network and follow its later changes.
+     */
+    public PrefixIndex(SocialNetwork network) {
+        this.network = network;
+        for (int i = 0; i < network.size(); i++) {
+            add(network.getProfile(i));
+        }
+        network.addListener(listener);
+    }
+
+    /**
+     * Stop following the network. Later queries see the profiles as of this call.
+     */
+    public void close() {
+        network.removeListener(listener);
+    }
+
+    /**
+     * Up to k distinct profiles whose username or a word of whose name starts with prefix, ignoring
+     * case. Username matches come first, each group in alphabetical order of the matching key; an empty
+     * prefix matches every profile.
+     */
+    public List<Profile> search(String prefix, int k) {
+        String key = key(prefix);
+        LinkedHashSet<Profile> matches = new LinkedHashSet<>();
+        usernames.collect(key, k, matches);
+        names.collect(key, k, matches);
+        return new ArrayList<>(matches);
+    }
+
+    /**
+     * Number of profiles whose username starts with prefix, ignoring case. O(log n).
+     */
+    public int countUsernames(String prefix) {
+        String key = key(prefix);
+        int from = usernames.lowerBound(key);
+        return usernames.prefixEnd(key, from) - from;
+    }
+
+    /**
+     * The i-th profile, in alphabetical order, whose username starts with prefix, ignoring case.
+     * Together with countUsernames() this pages through any number of matches without copying them.
+     *
+     * @throws IndexOutOfBoundsException unless 0 <= i < countUsernames(prefix)
+     */
+    public Profile usernameMatch(String prefix, int i) {
+        String key = key(prefix);
+        int from = usernames.lowerBound(key);
+        if (i < 0 || i >= usernames.prefixEnd(key, from) - from) {
+            throw new IndexOutOfBoundsException("match " + i + " of '" + prefix + "'");
+        }
+        return usernames.owners[from + i];
+    }
+
+    private static String key(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private void add(Profile profile) {
+        usernames.add(key(profile.getUsername()), profile);
+        for (String word : nameWords(profile)) {
+            names.add(word, profile);
+        }
+    }
+
+    private void remove(Profile profile) {
+        usernames.remove(key(profile.getUsername()), profile);
+        for (String word : nameWords(profile)) {
+            names.remove(word, profile);
+        }
+    }
+
+    // The full name and every suffix of it that starts a word, e.g. "ada lovelace" and "lovelace"
+    private static List<String> nameWords(Profile profile) {
+        List<String> words = new ArrayList<>();
+        if (profile.getName() == null) {
+            return words;
+        }
+        String name = key(profile.getName().trim());
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isWhitespace(name.charAt(i)) && (i == 0 || Character.isWhitespace(name.charAt(i - 1)))) {
+                words.add(name.substring(i));
+            }
+        }
+        return words;
+    }
+
+    // Keys in ascending order with the profile each belongs to; a key may repeat
+    private static final class SortedKeys {
+        // Up to this many pending keys are inserted one by one, more are sorted and merged in one pass
+        private static final int INSERT_THRESHOLD = 64;
+
+        String[] keys = new String[16];
+        Profile[] owners = new Profile[16];
+        int size;
+        // Added since the last merge, in no order
+        private final ArrayList<Key> pending = new ArrayList<>();
+
+        void add(String key, Profile owner) {
+            pending.add(new Key(key, owner));
+        }
+
+        void remove(String key, Profile owner) {
+            merge();
+            for (int i = lowerBound(key); i < size && keys[i].equals(key); i++) {
+                if (owners[i] == owner) {
+                    System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+                    System.arraycopy(owners, i + 1, owners, i, size - i - 1);
+                    size--;
+                    keys[size] = null;
+                    owners[size] = null;
+                    return;
+                }
+            }
+        }
+
+        // Add owners of keys starting with prefix to matches until it holds k
+        void collect(String prefix, int k, LinkedHashSet<Profile> matches) {
+            merge();
+            for (int i = lowerBound(prefix); i < size && matches.size() < k && keys[i].startsWith(prefix); i++) {
+                matches.add(owners[i]);
+            }
+        }
+
+        // First position whose key is not below key
+        int lowerBound(String key) {
+            merge();
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].compareTo(key) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        // First position from lowerBound(prefix) on whose key does not start with prefix
+        int prefixEnd(String prefix, int from) {
+            int lo = from;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].startsWith(prefix)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        // Move the pending keys into the sorted arrays
+        private void merge() {
+            int added = pending.size();
+            if (added == 0) {
+                return;
+            }
+            if (size + added > keys.length) {
+                int capacity = Math.max(size + added, keys.length * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                owners = Arrays.copyOf(owners, capacity);
+            }
+            if (added <= INSERT_THRESHOLD) {
+                // Shift the tail for each key: O(size) per key, but no new arrays
+                for (Key key : pending) {
+                    int i = upperBound(key.key);
+                    System.arraycopy(keys, i, keys, i + 1, size - i);
+                    System.arraycopy(owners, i, owners, i + 1, size - i);
+                    keys[i] = key.key;
+                    owners[i] = key.owner;
+                    size++;
+                }
+            } else {
+                // Sort the pending keys and merge from the back, so the arrays can be reused
+                pending.sort(null);
+                int i = size - 1;
+                int j = added - 1;
+                for (int out = size + added - 1; j >= 0; out--) {
+                    if (i >= 0 && keys[i].compareTo(pending.get(j).key) > 0) {
+                        keys[out] = keys[i];
+                        owners[out] = owners[i--];
+                    } else {
+                        keys[out] = pending.get(j).key;
+                        owners[out] = pending.get(j--).owner;
+                    }
+                }
+                size += added;
+            }
+            pending.clear();
+        }
+
+        // First position whose key is above key
+        private int upperBound(String key) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].compareTo(key) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private static final class Key implements Comparable<Key> {
+        final String key;
+        final Profile owner;
+
+        Key(String key, Profile owner) {
+            this.key = key;
+            this.owner = owner;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            return key.compareTo(other.key);
+        }
+    }
+
+    private final class Updater implements GraphListener {
+        @Override
+        public void profileAdded(int id) {
+            add(network.getProfile(id));
+        }
+
+        @Override
+        public void profileRenamed(int id, String oldUsername) {
+            Profile profile = network.getProfile(id);
+            usernames.remove(key(oldUsername), profile);
+            usernames.add(key(profile.getUsername()), profile);
+        }
+
+        @Override
+        public void profileRemoving(int id) {
+            remove(network.getProfile(id));
+        }
+    }
+}
@@ -1,15 +1,46 @@
 package src.graph;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class Profile {
+    private static final AtomicLong NEXT_ID = new AtomicLong();
 
+    // Never changes, so equals/hashCode stay stable when the username does
+    private final long id;
     private String username;
     private String name;
     private String profileImage;
+    // Networks that index this profile by username and must hear about renames
+    private final CopyOnWriteArrayList<ProfileIndex> networks;
 
     //Required information for Profile creation is username and name
     public Profile(String username, String name, String profileImage){
+        this.id = NEXT_ID.getAndIncrement();
         this.username = username;
         this.name = name;
         this.profileImage = profileImage;
+        this.networks = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * For subclasses that keep the fields elsewhere, such as the views of a ProfileStore. Only the id is
+     * set; the subclass overrides every method that uses the other fields.
+     */
+    Profile(long id){
+        this.id = id;
+        this.networks = null;
+    }
+
+    static long newId(){
+        return NEXT_ID.getAndIncrement();
+    }
+
+    /**
+     * Unique id assigned when the profile is created. Unlike the username it never changes.
+     */
+    public long getId(){
+        return this.id;
     }
 
     public String getUsername(){
@@ -23,14 +54,61 @@ public class Profile {
         return this.profileImage;
     }
 
+    /**
+     * Change the username, updating the username index of every network this profile belongs to.
+     *
+     * @throws IllegalArgumentException if another profile in one of those networks already uses it; the
+     *         profile and every network keep the old username
+     */
     public void changeUsername(String username){
+        ProfileIndex[] indexes = networks.toArray(new ProfileIndex[0]);
+        for (ProfileIndex network : indexes) {
+            Profile existing = network.getProfile(username);
+            if (existing != null && existing != this) {
+                throw new IllegalArgumentException("Username '" + username + "' is already taken");
+            }
+        }
+        String oldUsername = this.username;
         this.username = username;
+        int renamed = 0;
+        try {
+            for (; renamed < indexes.length; renamed++) {
+                indexes[renamed].usernameChanged(this, oldUsername);
+            }
+        } catch (IllegalArgumentException e) {
+            // A concurrent network took the name after the check above; move back to the old one
+            this.username = oldUsername;
+            for (int k = 0; k < renamed; k++) {
+                indexes[k].usernameChanged(this, username);
+            }
+            throw e;
+        }
     }
 
     public void setProfileImage(String url){
         this.profileImage = url;
     }
 
+    void joinedNetwork(ProfileIndex network){
+        networks.add(network);
+    }
+
+    void leftNetwork(ProfileIndex network){
+        networks.remove(network);
+    }
+
+    /**
+     * Two Profile objects are equal only if they are the same profile, identified by getId().
+     */
+    @Override
+    public boolean equals(Object o){
+        return o instanceof Profile && ((Profile) o).id == this.id;
+    }
+
+    @Override
+    public int hashCode(){
+        return Long.hashCode(id);
+    }
 
 
 }
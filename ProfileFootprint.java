@@ -0,0 +1,121 @@
+package src.graph;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Compares the heap used by profiles kept as separate Profile objects and in a ProfileStore.
+ *
+ * Usage: java src.graph.ProfileFootprint [profiles]
+ *
+ * Builds the same synthetic profiles each way and measures the live heap after a full GC. Three out of
+ * four profiles have an image URL on a shared CDN path. The rows are:
+ * <ul>
+ *   <li>Profile objects: an ArrayList of new Profile(...), as a SocialNetwork holds them;</li>
+ *   <li>+ username index: plus the HashMap from username to vertex id that a SocialNetwork keeps;</li>
+ *   <li>ProfileStore: the columns alone, with views made on demand;</li>
+ *   <li>ProfileStore + views: plus one view per profile in an ArrayList, as a SocialNetwork holds them
+ *       when its profiles come from a store;</li>
+ *   <li>+ username index: plus the username HashMap, whose keys the views also cache;</li>
+ *   <li>SocialNetwork.load(): a network opened from a snapshot file of the profiles, which reads its
+ *       strings and username lookups from the mapped file and so has no index on the heap.</li>
+ * </ul>
+ * Every row counts what is reachable from the measured objects; cumulative rows include the row above.
+ * Run with a heap large enough for the Profile objects, e.g. -Xmx2g for 5 million profiles.
+ */
+public class ProfileFootprint {
+    private static final String[] FIRST = {"Ada", "Alan", "Grace", "Linus", "Ken", "Dennis", "Barbara", "Edsger"};
+    private static final String[] LAST = {"Lovelace", "Turing", "Hopper", "Torvalds", "Thompson", "Ritchie"};
+
+    // Keeps what is being measured reachable
+    private static Object retained;
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("%,d profiles%n", n);
+        System.out.printf("%-26s %10s %16s%n", "representation", "MB", "bytes/profile");
+
+        long base = usedHeap();
+        ArrayList<Profile> objects = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            objects.add(new Profile(username(i), name(i), image(i)));
+        }
+        retained = objects;
+        report("Profile objects", usedHeap() - base, n);
+        retained = new Object[] {objects, usernameIndex(objects)};
+        report("  + username index", usedHeap() - base, n);
+        objects = null;
+        retained = null;
+
+        base = usedHeap();
+        ProfileStore store = new ProfileStore();
+        for (int i = 0; i < n; i++) {
+            store.add(username(i), name(i), image(i));
+        }
+        retained = store;
+        report("ProfileStore", usedHeap() - base, n);
+
+        ArrayList<Profile> views = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            views.add(store.profile(i));
+        }
+        retained = views;
+        report("ProfileStore + views", usedHeap() - base, n);
+        retained = new Object[] {views, usernameIndex(views)};
+        report("  + username index", usedHeap() - base, n);
+        System.out.printf("store.bytesUsed() estimate: %.1f MB, %d image URL prefixes%n", store.bytesUsed() / 1e6,
+            store.imagePrefixCount());
+
+        Path file = Files.createTempFile("footprint", ".snet");
+        try {
+            MappedSnapshot.write(new SocialNetwork(views, new SparseAdjacency(n)), file);
+            views = null;
+            store = null;
+            retained = null;
+            base = usedHeap();
+            retained = SocialNetwork.load(file);
+            report("SocialNetwork.load()", usedHeap() - base, n);
+        } finally {
+            retained = null;
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // The username index a SocialNetwork builds for profiles
+    private static HashMap<String, Integer> usernameIndex(ArrayList<Profile> profiles) {
+        HashMap<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < profiles.size(); i++) {
+            index.put(profiles.get(i).getUsername(), i);
+        }
+        return index;
+    }
+
+    private static String username(int i) {
+        return "user" + i;
+    }
+
+    private static String name(int i) {
+        return FIRST[i % FIRST.length] + " " + LAST[i / FIRST.length % LAST.length];
+    }
+
+    private static String image(int i) {
+        return i % 4 == 0 ? null : "https://cdn.example.com/avatars/" + i + ".jpg";
+    }
+
+    private static void report(String name, long bytes, int n) {
+        System.out.printf("%-26s %10.1f %16.1f%n", name, bytes / 1e6, (double) bytes / n);
+    }
+
+    // Live heap after collecting everything unreachable
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,187 @@
+package src.graph;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+/**
+ * Loads, resizes and caches profile images off the Swing event thread.
+ *
+ * get() never blocks: it returns the image if it is cached, and otherwise starts a background load
+ * and returns null so the caller can paint a placeholder. When the load finishes the callback runs on
+ * the event thread, typically to repaint. Images are cached per (URL, shape, size) in a bounded LRU
+ * map, and failed loads are remembered so they are not retried on every repaint.
+ *
+ * URLs may be http(s):, file: or plain file system paths.
+ */
+public class ProfileImageCache {
+
+    /** How the image is fitted into the requested size. */
+    public enum Shape {
+        /** Stretched to a size x size square and clipped to a circle, for graph nodes. */
+        CIRCLE,
+        /** Scaled to fit in a size x size box, keeping the aspect ratio. */
+        FIT
+    }
+
+    // Cached in place of images that failed to load
+    private static final BufferedImage FAILED = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+    private final LinkedHashMap<String, BufferedImage> cache;
+    // Callbacks waiting for each key that is being loaded
+    private final HashMap<String, List<Consumer<BufferedImage>>> pending = new HashMap<>();
+    private final ExecutorService executor = VirtualThreads.newPerTaskExecutor("profile-image-loader");
+
+    /**
+     * @param maxEntries number of resized images to keep before evicting the least recently used
+     */
+    public ProfileImageCache(int maxEntries) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Return the cached image, or null after starting a background load if it is not cached yet.
+     *
+     * @param url image location, may be null or empty for "no image"
+     * @param shape how to fit the image
+     * @param size width and height of the box to fit it in, in pixels
+     * @param onLoaded called on the event thread with the image, or null if it failed to load
+     */
+    public BufferedImage get(String url, Shape shape, int size, Consumer<BufferedImage> onLoaded) {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        String key = key(url, shape, size);
+        synchronized (this) {
+            BufferedImage image = cache.get(key);
+            if (image != null) {
+                return image == FAILED ? null : image;
+            }
+            List<Consumer<BufferedImage>> callbacks = pending.get(key);
+            if (callbacks != null) {
+                callbacks.add(onLoaded);
+                return null;
+            }
+            callbacks = new ArrayList<>();
+            callbacks.add(onLoaded);
+            pending.put(key, callbacks);
+        }
+        executor.execute(() -> {
+            BufferedImage loaded = load(url, shape, size);
+            List<Consumer<BufferedImage>> callbacks;
+            synchronized (this) {
+                cache.put(key, loaded != null ? loaded : FAILED);
+                callbacks = pending.remove(key);
+            }
+            SwingUtilities.invokeLater(() -> {
+                for (Consumer<BufferedImage> callback : callbacks) {
+                    callback.accept(loaded);
+                }
+            });
+        });
+        return null;
+    }
+
+    /**
+     * Whether an earlier load of this image failed. Such images are not retried until evicted.
+     */
+    public synchronized boolean hasFailed(String url, Shape shape, int size) {
+        return url != null && cache.get(key(url, shape, size)) == FAILED;
+    }
+
+    private static String key(String url, Shape shape, int size) {
+        return shape + ":" + size + ":" + url;
+    }
+
+    private static BufferedImage load(String url, Shape shape, int size) {
+        try {
+            BufferedImage original = ImageIO.read(toUrl(url));
+            if (original == null) {
+                System.out.println("Failed to load image " + url + ": unsupported format");
+                return null;
+            }
+            return shape == Shape.CIRCLE ? resizeCircle(original, size) : resizeToFit(original, size);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Failed to load image " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static URL toUrl(String url) throws IOException {
+        URI uri = URI.create(url.replace(" ", "%20"));
+        if (uri.getScheme() == null || uri.getScheme().length() == 1) {
+            // No scheme (or a Windows drive letter): treat it as a file path
+            return Paths.get(url).toUri().toURL();
+        }
+        return uri.toURL();
+    }
+
+    private static BufferedImage resizeCircle(BufferedImage originalImage, int size) {
+        // Use higher resolution for better quality
+        int highRes = size * 2;
+        BufferedImage resizedImage = new BufferedImage(highRes, highRes, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = resizedImage.createGraphics();
+        setQualityHints(g2d);
+        g2d.setRenderingHint(RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_ENABLE);
+        g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        // Create circular clip
+        g2d.setClip(new Ellipse2D.Double(0, 0, highRes, highRes));
+        g2d.drawImage(originalImage, 0, 0, highRes, highRes, null);
+        g2d.dispose();
+        return scaleDown(resizedImage, size, size);
+    }
+
+    private static BufferedImage resizeToFit(BufferedImage originalImage, int maxSize) {
+        int width = originalImage.getWidth();
+        int height = originalImage.getHeight();
+        double scale = Math.min((double) maxSize / width, (double) maxSize / height);
+        int newWidth = Math.max(1, (int) (width * scale));
+        int newHeight = Math.max(1, (int) (height * scale));
+
+        BufferedImage highResImage = new BufferedImage(newWidth * 2, newHeight * 2, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = highResImage.createGraphics();
+        setQualityHints(g2d);
+        g2d.drawImage(originalImage, 0, 0, newWidth * 2, newHeight * 2, null);
+        g2d.dispose();
+        return scaleDown(highResImage, newWidth, newHeight);
+    }
+
+    private static void setQualityHints(Graphics2D g2d) {
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
+    }
+
+    // Scale down to target size for final result
+    private static BufferedImage scaleDown(BufferedImage image, int width, int height) {
+        BufferedImage finalImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = finalImage.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.drawImage(image, 0, 0, width, height, null);
+        g2d.dispose();
+        return finalImage;
+    }
+}
@@ -0,0 +1,20 @@
+package src.graph;
+
+/**
+ * A collection that looks profiles up by username, so it has to be told when a username changes.
+ *
+ * Profile.changeUsername() checks every index the profile has joined for a clash before renaming,
+ * then calls usernameChanged() on each of them.
+ */
+interface ProfileIndex {
+
+    /**
+     * Profile with the given username, or null if there is none.
+     */
+    Profile getProfile(String username);
+
+    /**
+     * Re-key profile, whose username was oldUsername until now. Not meant to be called directly.
+     */
+    void usernameChanged(Profile profile, String oldUsername);
+}
@@ -0,0 +1,94 @@
+package src.graph;
+
+import java.util.List;
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+
+/**
+ * Combo box model for a typeahead field: lists the usernames of profiles matching the typed prefix.
+ *
+ * Rather than holding every username, the model asks a PrefixIndex for at most limit matches, and only
+ * when the list is read after the prefix or the network changed. A combo box whose popup is never
+ * opened never queries, and invalidate() after a change costs O(1) however many profiles there are.
+ * Give the combo box a prototype display value, or Swing measures every element to size it.
+ */
+public class ProfileSearchModel extends AbstractListModel<String> implements ComboBoxModel<String> {
+    private static final long serialVersionUID = 1L;
+
+    private PrefixIndex index;
+    private final int limit;
+    private String prefix = "";
+    // Usernames matching prefix, or null until read since the last change
+    private String[] matches;
+    private int lastSize;
+    private Object selected;
+
+    /**
+     * @param limit most usernames listed at once; typing more of the name narrows the list
+     */
+    public ProfileSearchModel(PrefixIndex index, int limit) {
+        this.index = index;
+        this.limit = limit;
+    }
+
+    /**
+     * Search another index, e.g. after the network was replaced.
+     */
+    public void setIndex(PrefixIndex index) {
+        this.index = index;
+        invalidate();
+    }
+
+    /**
+     * List the profiles whose username or name starts with prefix, ignoring case.
+     */
+    public void setPrefix(String prefix) {
+        if (!prefix.equals(this.prefix)) {
+            this.prefix = prefix;
+            invalidate();
+        }
+    }
+
+    /**
+     * Requery on the next read, e.g. after profiles were added or removed.
+     */
+    public void invalidate() {
+        matches = null;
+        fireContentsChanged(this, 0, Math.max(0, lastSize - 1));
+    }
+
+    private String[] matches() {
+        if (matches == null) {
+            List<Profile> profiles = index.search(prefix, limit);
+            matches = new String[profiles.size()];
+            for (int i = 0; i < matches.length; i++) {
+                matches[i] = profiles.get(i).getUsername();
+            }
+            lastSize = matches.length;
+        }
+        return matches;
+    }
+
+    @Override
+    public int getSize() {
+        return matches().length;
+    }
+
+    @Override
+    public String getElementAt(int i) {
+        return matches()[i];
+    }
+
+    @Override
+    public void setSelectedItem(Object item) {
+        if (item == null ? selected != null : !item.equals(selected)) {
+            selected = item;
+            fireContentsChanged(this, -1, -1);
+        }
+    }
+
+    @Override
+    public Object getSelectedItem() {
+        return selected;
+    }
+}
@@ -0,0 +1,409 @@
+package src.graph;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Profiles stored column by column instead of as one object per profile, for networks with millions
+ * of users.
+ *
+ * A Profile with short strings costs about 280 bytes of heap: the object, three String objects with
+ * their arrays, and the list of networks it belongs to. The store keeps each profile as one row of
+ * primitive columns: the profile id, and for the username, the name and the image URL a reference
+ * into pages of UTF-8 bytes. Image URLs are split at their last '/' and the part before it is stored
+ * once for all URLs that share it, so a million avatars on the same CDN path take one copy of the
+ * path. A row costs 36 bytes plus its string bytes; ProfileFootprint measures both.
+ *
+ * add() and profile() return views: small Profile objects that read and write their row. Views of
+ * the same row are equal, since Profile equality is by id, and any number of them can be made and
+ * dropped. They work wherever a Profile does, including in a SocialNetwork; changeUsername() and
+ * setProfileImage() update the row, and a rename re-keys every network that holds a view of the row.
+ *
+ * Rows added from a MappedSnapshot (see MappedSnapshot.profiles(ProfileStore)) keep referring to the
+ * strings in the mapped file instead of copying them, so adding a whole snapshot decodes nothing and
+ * costs about 36 bytes of heap per row. A view caches the username it last decoded, so repeated
+ * lookups by username, e.g. SocialNetwork.indexOf(Profile), do not allocate.
+ *
+ * Rows are numbered in the order they were added and never move or get reused, so a view stays
+ * valid for the life of the store; in a network that has not removed any profile, the row number is
+ * the vertex id. Strings replaced by changeUsername() or setProfileImage() are not reclaimed.
+ *
+ * Like SocialNetwork this is not safe to use from several threads at once.
+ */
+public final class ProfileStore {
+    // Strings are stored in pages of up to PAGE_SIZE bytes and referenced by a span: the address of the
+    // first byte shifted left by PAGE_BITS, plus the length. A string never crosses a page.
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final long NULL = -1;
+    // Set in a span that refers to string number (span & ~MAPPED) of the string table of mapped
+    private static final long MAPPED = Long.MIN_VALUE;
+    // imagePrefix of a row whose whole image URL is a mapped string, empty if there is no image
+    private static final int MAPPED_IMAGE = -2;
+
+    // Snapshot that the MAPPED spans refer to
+    private MappedSnapshot mapped;
+
+    private long[] ids = new long[16];
+    private long[] usernames = new long[16];
+    private long[] names = new long[16];
+    // Index into imagePrefixes of the part of the image URL up to its last '/', or -1 for no image
+    private int[] imagePrefix = new int[16];
+    private long[] imageSuffix = new long[16];
+    private int size;
+
+    private byte[][] pages = new byte[1][16];
+    // Address of the next free byte
+    private long used;
+    private long replacedBytes;
+
+    private final ArrayList<String> imagePrefixes = new ArrayList<>();
+    private final HashMap<String, Integer> imagePrefixIds = new HashMap<>();
+
+    // Networks holding a view of some row, and for each the rows it holds
+    private final ArrayList<ProfileIndex> networks = new ArrayList<>();
+    private final ArrayList<BitSet> members = new ArrayList<>();
+
+    /**
+     * Number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add a profile as a new row with a new id, and return a view of it.
+     *
+     * @param profileImage image URL, or null for none
+     * @throws IllegalArgumentException if a string is 1 MB or longer in UTF-8
+     */
+    public Profile add(String username, String name, String profileImage) {
+        if (size == ids.length) {
+            reserve(size * 2);
+        }
+        int row = size;
+        ids[row] = Profile.newId();
+        usernames[row] = put(username);
+        names[row] = put(name);
+        setImage(row, profileImage);
+        size++;
+        return new StoredProfile(this, row);
+    }
+
+    /**
+     * Add every profile of snapshot as a new row, in vertex id order, and return views of them.
+     *
+     * The rows keep reading their strings from the mapped file until they are changed. A store refers to
+     * at most one snapshot; the profiles of any other are copied in like add() does.
+     */
+    ArrayList<Profile> add(MappedSnapshot snapshot) {
+        int n = snapshot.size();
+        ArrayList<Profile> views = new ArrayList<>(n);
+        if (mapped != null && mapped != snapshot) {
+            for (int i = 0; i < n; i++) {
+                views.add(add(snapshot.username(i), snapshot.name(i), snapshot.profileImage(i)));
+            }
+            return views;
+        }
+        mapped = snapshot;
+        if (size + n > ids.length) {
+            reserve(Math.max(size + n, ids.length * 2));
+        }
+        for (int i = 0; i < n; i++) {
+            int row = size++;
+            ids[row] = Profile.newId();
+            usernames[row] = MAPPED | 3L * i;
+            names[row] = MAPPED | (3L * i + 1);
+            imagePrefix[row] = MAPPED_IMAGE;
+            imageSuffix[row] = MAPPED | (3L * i + 2);
+            views.add(new StoredProfile(this, row));
+        }
+        return views;
+    }
+
+    private void reserve(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        usernames = Arrays.copyOf(usernames, capacity);
+        names = Arrays.copyOf(names, capacity);
+        imagePrefix = Arrays.copyOf(imagePrefix, capacity);
+        imageSuffix = Arrays.copyOf(imageSuffix, capacity);
+    }
+
+    /**
+     * A view of row, equal to every other view of it.
+     */
+    public Profile profile(int row) {
+        checkRow(row);
+        return new StoredProfile(this, row);
+    }
+
+    public String username(int row) {
+        checkRow(row);
+        return get(usernames[row]);
+    }
+
+    public String name(int row) {
+        checkRow(row);
+        return get(names[row]);
+    }
+
+    /**
+     * Image URL of row, or null if it has none.
+     */
+    public String profileImage(int row) {
+        checkRow(row);
+        int prefix = imagePrefix[row];
+        if (prefix == MAPPED_IMAGE) {
+            String url = get(imageSuffix[row]);
+            return url.isEmpty() ? null : url;
+        }
+        return prefix < 0 ? null : imagePrefixes.get(prefix).concat(get(imageSuffix[row]));
+    }
+
+    /**
+     * Number of distinct image URL prefixes (the part up to the last '/') stored.
+     */
+    public int imagePrefixCount() {
+        return imagePrefixes.size();
+    }
+
+    /**
+     * Approximate heap used by the columns, string pages and image prefixes, not counting views or
+     * strings that are still read from a mapped snapshot.
+     */
+    public long bytesUsed() {
+        long bytes = 8L * ids.length + 8L * usernames.length + 8L * names.length + 4L * imagePrefix.length
+            + 8L * imageSuffix.length + 4L * pages.length;
+        for (byte[] page : pages) {
+            bytes += page == null ? 0 : 16 + page.length;
+        }
+        for (String prefix : imagePrefixes) {
+            // The String and its array, plus a HashMap entry and boxed id for the lookup
+            bytes += 40 + prefix.length() + 48;
+        }
+        for (BitSet rows : members) {
+            bytes += rows.size() / 8;
+        }
+        return bytes;
+    }
+
+    /**
+     * UTF-8 bytes of strings that were replaced by a rename or a new image and are no longer used.
+     */
+    public long replacedBytes() {
+        return replacedBytes;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+    }
+
+    private void setImage(int row, String url) {
+        if (url == null) {
+            imagePrefix[row] = -1;
+            imageSuffix[row] = NULL;
+            return;
+        }
+        int slash = url.lastIndexOf('/') + 1;
+        String prefix = url.substring(0, slash);
+        Integer id = imagePrefixIds.get(prefix);
+        if (id == null) {
+            id = imagePrefixes.size();
+            imagePrefixes.add(prefix);
+            imagePrefixIds.put(prefix, id);
+        }
+        imagePrefix[row] = id;
+        imageSuffix[row] = put(url.substring(slash));
+    }
+
+    // Append s to the string pages and return its span
+    private long put(String s) {
+        if (s == null) {
+            return NULL;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= PAGE_SIZE) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes is too long to store");
+        }
+        int page = (int) (used >>> PAGE_BITS);
+        int offset = (int) (used & (PAGE_SIZE - 1));
+        if (offset + bytes.length > PAGE_SIZE) {
+            // Leave the rest of the page unused rather than split the string
+            page++;
+            offset = 0;
+        }
+        if (page == pages.length) {
+            pages = Arrays.copyOf(pages, pages.length * 2);
+        }
+        if (pages[page] == null) {
+            pages[page] = new byte[Math.max(16, bytes.length)];
+        }
+        if (offset + bytes.length > pages[page].length) {
+            // Pages grow by doubling up to PAGE_SIZE, so a small store does not hold a whole page
+            int length = pages[page].length;
+            while (length < offset + bytes.length) {
+                length = Math.min(PAGE_SIZE, length * 2);
+            }
+            pages[page] = Arrays.copyOf(pages[page], length);
+        }
+        System.arraycopy(bytes, 0, pages[page], offset, bytes.length);
+        long address = ((long) page << PAGE_BITS) | offset;
+        used = address + bytes.length;
+        return (address << PAGE_BITS) | bytes.length;
+    }
+
+    private String get(long span) {
+        if (span == NULL) {
+            return null;
+        }
+        if ((span & MAPPED) != 0) {
+            return mapped.string(span & ~MAPPED);
+        }
+        long address = span >>> PAGE_BITS;
+        return new String(pages[(int) (address >>> PAGE_BITS)], (int) (address & (PAGE_SIZE - 1)),
+            (int) (span & (PAGE_SIZE - 1)), StandardCharsets.UTF_8);
+    }
+
+    // Heap bytes of a string; mapped strings take none
+    private long length(long span) {
+        return span == NULL || (span & MAPPED) != 0 ? 0 : span & (PAGE_SIZE - 1);
+    }
+
+    private void changeUsername(StoredProfile profile, String username) {
+        int row = profile.row;
+        for (int k = 0; k < networks.size(); k++) {
+            if (members.get(k).get(row)) {
+                Profile existing = networks.get(k).getProfile(username);
+                if (existing != null && !existing.equals(profile)) {
+                    throw new IllegalArgumentException("Username '" + username + "' is already taken");
+                }
+            }
+        }
+        long oldSpan = usernames[row];
+        String oldUsername = get(oldSpan);
+        long newSpan = put(username);
+        usernames[row] = newSpan;
+        int renamed = 0;
+        try {
+            for (; renamed < networks.size(); renamed++) {
+                if (members.get(renamed).get(row)) {
+                    networks.get(renamed).usernameChanged(profile, oldUsername);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // A network took the name after the check above; move back to the old one, as Profile does
+            usernames[row] = oldSpan;
+            replacedBytes += length(newSpan);
+            for (int k = 0; k < renamed; k++) {
+                if (members.get(k).get(row)) {
+                    networks.get(k).usernameChanged(profile, username);
+                }
+            }
+            throw e;
+        }
+        replacedBytes += length(oldSpan);
+    }
+
+    private void setProfileImage(int row, String url) {
+        replacedBytes += length(imageSuffix[row]);
+        setImage(row, url);
+    }
+
+    private void joined(int row, ProfileIndex network) {
+        for (int k = 0; k < networks.size(); k++) {
+            if (networks.get(k) == network) {
+                members.get(k).set(row);
+                return;
+            }
+        }
+        networks.add(network);
+        BitSet rows = new BitSet();
+        rows.set(row);
+        members.add(rows);
+    }
+
+    private void left(int row, ProfileIndex network) {
+        for (int k = 0; k < networks.size(); k++) {
+            if (networks.get(k) == network) {
+                members.get(k).clear(row);
+                if (members.get(k).isEmpty()) {
+                    networks.remove(k);
+                    members.remove(k);
+                }
+                return;
+            }
+        }
+    }
+
+    // A Profile that reads and writes one row of a store; the fields of Profile itself stay unused
+    private static final class StoredProfile extends Profile {
+        private final ProfileStore store;
+        private final int row;
+        // Last username read, or null; a rename gives the row a new span, which makes it stale
+        private Decoded cachedUsername;
+
+        StoredProfile(ProfileStore store, int row) {
+            super(store.ids[row]);
+            this.store = store;
+            this.row = row;
+        }
+
+        @Override
+        public String getUsername() {
+            long span = store.usernames[row];
+            Decoded cached = cachedUsername;
+            if (cached == null || cached.span != span) {
+                cached = new Decoded(span, store.get(span));
+                cachedUsername = cached;
+            }
+            return cached.value;
+        }
+
+        @Override
+        public String getName() {
+            return store.get(store.names[row]);
+        }
+
+        @Override
+        public String getProfileImage() {
+            return store.profileImage(row);
+        }
+
+        @Override
+        public void changeUsername(String username) {
+            store.changeUsername(this, username);
+        }
+
+        @Override
+        public void setProfileImage(String url) {
+            store.setProfileImage(row, url);
+        }
+
+        @Override
+        void joinedNetwork(ProfileIndex network) {
+            store.joined(row, network);
+        }
+
+        @Override
+        void leftNetwork(ProfileIndex network) {
+            store.left(row, network);
+        }
+    }
+
+    // A string and the span it was decoded from. Immutable, so a view can be read from several threads,
+    // e.g. through a SocialNetwork snapshot.
+    private static final class Decoded {
+        final long span;
+        final String value;
+
+        Decoded(long span, String value) {
+            this.span = span;
+            this.value = value;
+        }
+    }
+}
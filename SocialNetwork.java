@@ -1,6 +1,20 @@
 
 package src.graph;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /*
  * CS112 Graph Lab
@@ -11,9 +25,30 @@ import java.util.ArrayList;
  * @author Juliania Shyprykevych, Pooja Kedia, Matthew Specht
  */
 
-public class SocialNetwork{
+public class SocialNetwork implements ProfileIndex{
+    // Vertex i of the graph is profiles.get(i). Read-only outside this class, use addProfile() to add.
     public ArrayList<Profile> profiles;
-    public int[][] SocialNetwork;
+    private final Adjacency adjacency;
+    // Null in a snapshot until its first lookup by username, and in a network opened by load(Path)
+    // until its first rename; see usernames()
+    private volatile HashMap<String, Integer> usernameIndex = new HashMap<>();
+    // File a network opened by load(Path) was read from. Until the first rename its sorted username
+    // section answers lookups by username instead of usernameIndex.
+    private MappedSnapshot mappedNames;
+    // degree[i] is the number of friends of vertex i, kept in step with the adjacency
+    private int[] degree = new int[0];
+    private long friendshipCount;
+    // Scratch space for suggestFriends(): per-vertex counters (all zero between calls) and the
+    // vertices whose counters were touched
+    private int[] suggestionScores = new int[0];
+    private int[] suggestionTouched = new int[0];
+
+    // Created on first use by the path and distance queries
+    private GraphTraversal traversal;
+    private final ArrayList<GraphListener> listeners = new ArrayList<>();
+
+    // Batches smaller than this are applied on the calling thread
+    private static final int PARALLEL_BATCH_THRESHOLD = 10_000;
 
     /**
      * Constructor to initialize the adjacency matrix using an initialized list of Profiles
@@ -23,29 +58,381 @@ public class SocialNetwork{
      * 
      * @param profiles arraylist of Profile objects that represent the nodes the social network is comprised of
      */
-    public NetworkGraph(ArrayList<Profile> profiles){
-        this.profiles = new ArrayList<>(profiles);
-        int n = profiles.size();
-        
-        int[][] NetworkGraph = new int[n][n];
-        for(int i = 0; i< n; i++){
-            for(int j=0; j<n; j++){
-                NetworkGraph[i][j] =0;
-            }
+    public SocialNetwork(ArrayList<Profile> profiles){
+        this(profiles, new IntMatrixAdjacency(profiles.size()));
+    }
+
+    /**
+     * Constructor that stores the friendships in the given Adjacency instead of an int matrix.
+     *
+     * @param profiles arraylist of Profile objects that represent the nodes the social network is comprised of
+     * @param adjacency empty edge storage, e.g. a BitMatrixAdjacency for large networks
+     */
+    public SocialNetwork(ArrayList<Profile> profiles, Adjacency adjacency){
+        if (adjacency.size() != 0) {
+            throw new IllegalArgumentException("adjacency must be empty");
+        }
+        this.profiles = new ArrayList<>(profiles.size());
+        this.adjacency = adjacency;
+        addProfiles(profiles);
+    }
+
+    private SocialNetwork(SocialNetwork source, Adjacency adjacency){
+        this(new ArrayList<>(source.profiles), adjacency, Arrays.copyOf(source.degree, source.size()),
+            source.friendshipCount);
+    }
+
+    // Read-only copy over edges that are already filled in; degree and friendshipCount must match them.
+    // Like a snapshot it does not join its profiles, so they keep no reference to it.
+    private SocialNetwork(ArrayList<Profile> profiles, Adjacency adjacency, int[] degree, long friendshipCount){
+        this.profiles = profiles;
+        this.adjacency = adjacency;
+        this.degree = degree;
+        this.friendshipCount = friendshipCount;
+        for (int i = 0; i < profiles.size(); i++) {
+            usernameIndex.put(profiles.get(i).getUsername(), i);
+        }
+    }
+
+    // Snapshot of source; see snapshot()
+    private SocialNetwork(SocialNetwork source){
+        this.profiles = new ArrayList<>(source.profiles);
+        this.adjacency = source.adjacency.snapshot();
+        this.degree = Arrays.copyOf(source.degree, source.size());
+        this.friendshipCount = source.friendshipCount;
+        this.usernameIndex = null;
+        this.mappedNames = source.usernameIndex == null ? source.mappedNames : null;
+    }
+
+    // Profiles and friendships read from snapshot, with the profiles at the same vertex ids as in the file
+    private SocialNetwork(MappedSnapshot snapshot, ArrayList<Profile> profiles, int[] degree){
+        this.profiles = profiles;
+        this.adjacency = snapshot.adjacency();
+        this.degree = degree;
+        this.friendshipCount = snapshot.friendshipCount();
+        this.usernameIndex = null;
+        this.mappedNames = snapshot;
+        for (Profile profile : profiles) {
+            profile.joinedNetwork(this);
+        }
+    }
+
+    /**
+     * Number of profiles (vertices) in the network.
+     *
+     * This is the logical size of the graph; the adjacency matrix may be larger (see capacity()).
+     */
+    public int size() {
+        return profiles.size();
+    }
+
+    /**
+     * Number of vertices the adjacency matrix can hold before it has to be resized.
+     */
+    public int capacity() {
+        return adjacency.capacity();
+    }
+
+    /**
+     * The storage holding the friendships of this network.
+     */
+    public Adjacency adjacency() {
+        return adjacency;
+    }
+
+    /**
+     * Return a read-only copy of this network with its friendships stored in compressed sparse row form.
+     *
+     * Lookups and friend lists on the copy are faster and more compact than on any growable backend,
+     * but addProfile(), addFriend() and removeProfile() on it throw UnsupportedOperationException.
+     *
+     * The copy shares the Profile objects but, like a snapshot(), does not join them: nothing in this
+     * network or its profiles refers to the copy, so it is reclaimed once the caller drops it. Its
+     * username index is taken at the time of the call; a profile renamed afterwards is found by vertex
+     * id only.
+     */
+    public SocialNetwork freeze() {
+        return new SocialNetwork(this, new CsrAdjacency(adjacency));
+    }
+
+    /**
+     * Return an immutable view of this network as it is now, for long-running reads such as analytics
+     * sweeps, rendering or export that must not see the graph change under them.
+     *
+     * Taking a snapshot costs O(n) and copies no friend lists: the view shares the rows of the adjacency,
+     * and the first addFriend() or removeFriend() that touches a shared row afterwards copies that row
+     * (see Adjacency.snapshot()). Writers are never blocked by readers of a snapshot. Nothing in this
+     * network refers to a snapshot, so once it is dropped the garbage collector reclaims it together
+     * with the old rows that only it still held. Like freeze(), the view is read-only: addProfile(),
+     * addFriend() and removeProfile() on it throw UnsupportedOperationException, and it has no listeners.
+     *
+     * Call this on the thread that changes the network, then hand the snapshot to any other thread the
+     * usual way (an executor, a started thread, a volatile field). Queries on it need no locking and
+     * may run on several threads at once, except suggestFriends() and the path and distance queries,
+     * which reuse scratch space and must be run from one thread at a time.
+     *
+     * The Profile objects are shared with this network, so their fields are not frozen. The snapshot
+     * builds its username index on its first lookup by username or Profile; a profile renamed after
+     * that is found by vertex id only.
+     */
+    public SocialNetwork snapshot() {
+        return new SocialNetwork(this);
+    }
+
+    /**
+     * Write this network to file in the binary snapshot format described in MappedSnapshot.
+     *
+     * The file is replaced atomically, so it always holds either the previous or the new snapshot.
+     *
+     * @param file where to save, overwritten if it exists
+     */
+    public void save(Path file) throws IOException {
+        MappedSnapshot.write(this, file);
+    }
+
+    /**
+     * Open a saved network without copying its friendships to the heap.
+     *
+     * The file is memory-mapped and the returned network reads friend lists straight from it, so even a
+     * multi-GB graph opens in about the time it takes to create its Profile objects. Those are views of
+     * a ProfileStore, which takes a fraction of the heap of separate Profile objects. No username index
+     * is built either: lookups by username binary-search the sorted username section of the file, in
+     * O(log n) reads, until the first rename replaces it with a HashMap. Like freeze(), the result is
+     * read-only: addProfile(), addFriend() and removeProfile() on it throw UnsupportedOperationException.
+     *
+     * @param file snapshot written by save()
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static SocialNetwork load(Path file) throws IOException {
+        MappedSnapshot snapshot = MappedSnapshot.open(file);
+        Adjacency edges = snapshot.adjacency();
+        int[] degree = new int[snapshot.size()];
+        for (int i = 0; i < degree.length; i++) {
+            degree[i] = edges.degree(i);
+        }
+        return new SocialNetwork(snapshot, snapshot.profiles(new ProfileStore()), degree);
+    }
+
+    /**
+     * Load a saved network into the given storage, giving a network that can be modified.
+     *
+     * @param file snapshot written by save()
+     * @param adjacency empty edge storage to copy the friendships into
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static SocialNetwork load(Path file, Adjacency adjacency) throws IOException {
+        return load(MappedSnapshot.open(file), new SocialNetwork(new ArrayList<>(), adjacency));
+    }
+
+    // Add the profiles and friendships of snapshot to network, which must be empty
+    static SocialNetwork load(MappedSnapshot snapshot, SocialNetwork network) {
+        network.addProfiles(snapshot.profiles());
+        // Edges come in increasing (u, v) order, so sorted rows are only ever appended to
+        snapshot.adjacency().forEachEdge(network::addFriend);
+        return network;
+    }
+
+    /*
+     * Read-only copy that shares nothing mutable with this network: new Profile objects with the same
+     * fields and a CSR copy of the friendships. Another thread can read it, e.g. to save it, while this
+     * network keeps changing.
+     */
+    SocialNetwork detachedCopy() {
+        ArrayList<Profile> copies = new ArrayList<>(profiles.size());
+        for (Profile p : profiles) {
+            copies.add(new Profile(p.getUsername(), p.getName(), p.getProfileImage()));
         }
-        this.SocialNetwork = NetworkGraph;
+        return new SocialNetwork(copies, new CsrAdjacency(adjacency), Arrays.copyOf(degree, profiles.size()),
+            friendshipCount);
+    }
+
+    /**
+     * Make sure the adjacency matrix can hold at least minCapacity profiles.
+     *
+     * Use this before adding a known number of profiles so the matrix is resized once.
+     *
+     * @param minCapacity number of profiles the matrix must be able to hold
+     */
+    public void reserve(int minCapacity) {
+        adjacency.reserve(minCapacity);
     }
     
     /*
      * Add a new profile to the network while preserving existing friendships
      * 
      * Ensure the profile does not exist already and perform resizing.
+     * The matrix grows by doubling, so adding n profiles one at a time copies O(n^2) cells in total
+     * instead of O(n^3).
      * 
      * @param newProfile Profile of new user to be added.
      */
     public void addProfile(Profile newProfile) {
-      // WRITE YOUR CODE HERE //
-        
+        if (newProfile == null || lookup(newProfile.getUsername()) >= 0) {
+            return;
+        }
+        adjacency.grow(profiles.size() + 1);
+        if (degree.length < adjacency.capacity()) {
+            degree = Arrays.copyOf(degree, adjacency.capacity());
+        }
+        index(newProfile, profiles.size());
+        profiles.add(newProfile);
+        for (GraphListener listener : listeners) {
+            listener.profileAdded(profiles.size() - 1);
+        }
+    }
+
+    /**
+     * Add every profile in the collection that is not already in the network.
+     *
+     * The adjacency matrix is resized at most once for the whole collection.
+     *
+     * @param newProfiles Profiles of the new users to be added
+     */
+    public void addProfiles(Collection<Profile> newProfiles) {
+        adjacency.reserve(profiles.size() + newProfiles.size());
+        for (Profile p : newProfiles) {
+            addProfile(p);
+        }
+    }
+
+    private void index(Profile profile, int id) {
+        usernameIndex.put(profile.getUsername(), id);
+        profile.joinedNetwork(this);
+    }
+
+    // Vertex id of the profile with the given username, or -1
+    private int lookup(String username) {
+        MappedSnapshot names = mappedNames;
+        if (names != null) {
+            return names.indexOf(username);
+        }
+        Integer id = usernames().get(username);
+        return id != null ? id : -1;
+    }
+
+    // The username index, built on first use in a snapshot and on the first rename in a network opened
+    // by load(Path). A snapshot does not join its profiles, so it is never told about renames and
+    // nothing outside it keeps it alive.
+    private HashMap<String, Integer> usernames() {
+        HashMap<String, Integer> index = usernameIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = usernameIndex;
+                if (index == null) {
+                    index = new HashMap<>();
+                    for (int i = 0; i < profiles.size(); i++) {
+                        index.put(profiles.get(i).getUsername(), i);
+                    }
+                    usernameIndex = index;
+                    mappedNames = null;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Called by Profile.changeUsername() to move the profile to its new key in the username index.
+     */
+    @Override
+    public void usernameChanged(Profile profile, String oldUsername) {
+        if (usernameIndex == null) {
+            // The file no longer has every username; index the current ones, the new one included
+            mappedNames = null;
+            Integer id = usernames().get(profile.getUsername());
+            if (id != null) {
+                for (GraphListener listener : listeners) {
+                    listener.profileRenamed(id, oldUsername);
+                }
+            }
+            return;
+        }
+        Integer id = usernameIndex.remove(oldUsername);
+        if (id != null) {
+            usernameIndex.put(profile.getUsername(), id);
+            for (GraphListener listener : listeners) {
+                listener.profileRenamed(id, oldUsername);
+            }
+        }
+    }
+
+    /**
+     * Register a listener to be told about every later profile and friendship change.
+     *
+     * Read-only copies made by freeze() do not inherit listeners.
+     */
+    public void addListener(GraphListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop notifying a listener registered with addListener().
+     */
+    public void removeListener(GraphListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Vertex id of a profile, i.e. its position in profiles, or -1 if it is not in the network.
+     *
+     * Runs in O(1) using the username index.
+     */
+    public int indexOf(Profile profile) {
+        if (profile == null) {
+            return -1;
+        }
+        int id = lookup(profile.getUsername());
+        return id >= 0 && profiles.get(id).equals(profile) ? id : -1;
+    }
+
+    /**
+     * Vertex id of the profile with the given username, or -1 if there is none.
+     */
+    public int indexOf(String username) {
+        return lookup(username);
+    }
+
+    /**
+     * Profile with the given username, or null if there is none.
+     */
+    @Override
+    public Profile getProfile(String username) {
+        int id = lookup(username);
+        return id >= 0 ? profiles.get(id) : null;
+    }
+
+    /**
+     * Profile at the given vertex id.
+     *
+     * @throws IndexOutOfBoundsException if id is not between 0 and size()-1
+     */
+    public Profile getProfile(int id) {
+        return profiles.get(id);
+    }
+
+    /**
+     * Number of friends of a profile, or 0 if it is not in the network. Runs in O(1).
+     */
+    public int degree(Profile profile) {
+        return degree(indexOf(profile));
+    }
+
+    /**
+     * Number of friends of the given vertex id, or 0 if it is not in the network. Runs in O(1).
+     */
+    public int degree(int id) {
+        return isVertex(id) ? degree[id] : 0;
+    }
+
+    /**
+     * Number of friendships (undirected edges) in the network.
+     */
+    public long friendshipCount() {
+        return friendshipCount;
+    }
+
+    private boolean isVertex(int id) {
+        return id >= 0 && id < profiles.size();
     }
 
     /**
@@ -57,8 +444,16 @@ public class SocialNetwork{
      * @param friendLookup Profile of the "friend" who you are looking up
      */
     public boolean searchFriend(Profile primaryUser, Profile friendLookup){
-        // WRITE YOUR CODE HERE //
-        return false;
+        return searchFriend(indexOf(primaryUser), indexOf(friendLookup));
+    }
+
+    /**
+     * Searches if edge exists between two vertex ids, skipping the profile lookup.
+     *
+     * Returns false if either id is not in the network.
+     */
+    public boolean searchFriend(int primaryUser, int friendLookup){
+        return isVertex(primaryUser) && isVertex(friendLookup) && adjacency.contains(primaryUser, friendLookup);
     }
 
     /**
@@ -69,9 +464,300 @@ public class SocialNetwork{
      * @param primaryUser Profile who's friendlist you are trying to populate
      */
     public ArrayList<Profile> allFriends(Profile primaryUser){
-        // WRITE YOUR CODE HERE //
-        return new ArrayList<>();
+        return allFriends(indexOf(primaryUser));
+    }
+
+    /**
+     * Friend list of the given vertex id, or an empty list if it is not in the network.
+     */
+    public ArrayList<Profile> allFriends(int primaryUser){
+        if (!isVertex(primaryUser)) {
+            return new ArrayList<>();
+        }
+        ArrayList<Profile> friends = new ArrayList<>();
+        adjacency.forEachNeighbor(primaryUser, j -> friends.add(profiles.get(j)));
+        return friends;
     }
+
+    /**
+     * One page of a friend list, for showing long lists a screen at a time.
+     *
+     * Friends come in increasing vertex id order. Pass FriendPage.START for the first page and the
+     * previous page's nextCursor for each page after it; only the friends on the requested page are
+     * read, so paging through a list of d friends costs O(d) in total for the matrix backends and
+     * O(limit * log d) per page for the sparse ones. The cursor is the last vertex id returned, so pages
+     * stay consistent while friendships are added or removed, but removeProfile() renumbers a vertex and
+     * may then cause a friend to be skipped or shown twice.
+     *
+     * @param primaryUser Profile whose friends to list
+     * @param cursor FriendPage.START or the nextCursor of the previous page
+     * @param limit maximum number of friends on the page
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    public FriendPage friends(Profile primaryUser, int cursor, int limit) {
+        return friends(indexOf(primaryUser), cursor, limit);
+    }
+
+    /**
+     * Vertex-id version of friends(); an id not in the network has no friends.
+     */
+    public FriendPage friends(int primaryUser, int cursor, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        ArrayList<Profile> page = new ArrayList<>(Math.min(limit, 64));
+        if (!isVertex(primaryUser) || cursor == FriendPage.END) {
+            return new FriendPage(page, FriendPage.END);
+        }
+        int next = adjacency.nextNeighbor(primaryUser, cursor + 1);
+        while (next >= 0 && page.size() < limit) {
+            page.add(profiles.get(next));
+            cursor = next;
+            next = adjacency.nextNeighbor(primaryUser, next + 1);
+        }
+        return new FriendPage(page, next >= 0 ? cursor : FriendPage.END);
+    }
+
+    /**
+     * Lazy view of a friend list: friends are read from the adjacency one at a time as the iterator
+     * advances, in increasing vertex id order. The network must not be changed while it is in use.
+     */
+    public Iterator<Profile> friendIterator(Profile primaryUser) {
+        return Spliterators.iterator(friendSpliterator(indexOf(primaryUser)));
+    }
+
+    /**
+     * Lazy stream of a friend list; see friendSpliterator(). Call parallel() on it to spread a long
+     * list over the common pool, e.g. network.friendStream(p).parallel().filter(...).count().
+     */
+    public Stream<Profile> friendStream(Profile primaryUser) {
+        return StreamSupport.stream(friendSpliterator(indexOf(primaryUser)), false);
+    }
+
+    /**
+     * Lazy, splittable view of the friends of a vertex id, in increasing vertex id order.
+     *
+     * Nothing is copied: each friend is found in the adjacency when it is consumed. trySplit() halves
+     * the remaining range of vertex ids, so parallel streams divide a long row between threads. The
+     * network must not be changed while the spliterator is in use; an id not in the network has no
+     * friends.
+     */
+    public Spliterator<Profile> friendSpliterator(int primaryUser) {
+        if (!isVertex(primaryUser)) {
+            return Spliterators.emptySpliterator();
+        }
+        return new FriendSpliterator(primaryUser, 0, profiles.size(), degree[primaryUser]);
+    }
+
+    /*
+     * Friends of row among the vertex ids [next, end). The estimate starts at the degree and halves with
+     * every split, which is exact for friends spread evenly over the ids.
+     */
+    private final class FriendSpliterator implements Spliterator<Profile> {
+        // Rows with fewer friends than this are not split any further
+        private static final int MIN_SPLIT = 1024;
+
+        private final int row;
+        private int next;
+        private final int end;
+        private long estimate;
+
+        FriendSpliterator(int row, int next, int end, long estimate) {
+            this.row = row;
+            this.next = next;
+            this.end = end;
+            this.estimate = estimate;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Profile> action) {
+            int friend = next < end ? adjacency.nextNeighbor(row, next) : -1;
+            if (friend < 0 || friend >= end) {
+                next = end;
+                return false;
+            }
+            next = friend + 1;
+            action.accept(profiles.get(friend));
+            return true;
+        }
+
+        @Override
+        public Spliterator<Profile> trySplit() {
+            int mid = (next + end) >>> 1;
+            if (estimate < MIN_SPLIT || mid <= next) {
+                return null;
+            }
+            estimate >>>= 1;
+            FriendSpliterator prefix = new FriendSpliterator(row, next, mid, estimate);
+            next = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL;
+        }
+    }
+    /**
+     * Return the friends two profiles have in common.
+     *
+     * Bit-matrix rows are intersected word by word; sparse rows are merged as sorted lists.
+     *
+     * @param primaryUser Profile of one user
+     * @param other Profile of the other user
+     */
+    public ArrayList<Profile> mutualFriends(Profile primaryUser, Profile other) {
+        int a = indexOf(primaryUser);
+        int b = indexOf(other);
+        ArrayList<Profile> mutual = new ArrayList<>();
+        if (a >= 0 && b >= 0) {
+            adjacency.forEachCommonNeighbor(a, b, j -> mutual.add(profiles.get(j)));
+        }
+        return mutual;
+    }
+
+    /**
+     * Number of friends two vertex ids have in common, or 0 if either is not in the network.
+     *
+     * On a bit matrix this is a popcount of the AND of both rows and allocates nothing.
+     */
+    public int mutualFriendCount(int primaryUser, int other) {
+        if (!isVertex(primaryUser) || !isVertex(other)) {
+            return 0;
+        }
+        return adjacency.countCommonNeighbors(primaryUser, other);
+    }
+
+    public int mutualFriendCount(Profile primaryUser, Profile other) {
+        return mutualFriendCount(indexOf(primaryUser), indexOf(other));
+    }
+
+    /**
+     * "People you may know": up to k profiles that are not yet friends with primaryUser, ranked by how
+     * many friends they have in common with primaryUser (ties go to the lower vertex id).
+     *
+     * @param primaryUser Profile to suggest friends for
+     * @param k maximum number of suggestions
+     */
+    public ArrayList<Profile> suggestFriends(Profile primaryUser, int k) {
+        ArrayList<Profile> suggestions = new ArrayList<>();
+        for (int id : suggestFriends(indexOf(primaryUser), k)) {
+            suggestions.add(profiles.get(id));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Vertex-id version of suggestFriends().
+     *
+     * Walks the friends of each friend once, counting how often every candidate is reached; that count
+     * is the number of mutual friends. The counters are reused between calls and only the entries that
+     * were touched are reset, so a call costs O(sum of friends' degrees + candidates * log k) and its
+     * memory is bounded by the candidate count, not by k.
+     */
+    public int[] suggestFriends(int primaryUser, int k) {
+        if (!isVertex(primaryUser) || k <= 0) {
+            return new int[0];
+        }
+        if (suggestionScores.length < profiles.size()) {
+            suggestionScores = new int[adjacency.capacity()];
+            suggestionTouched = new int[adjacency.capacity()];
+        }
+        int[] scores = suggestionScores;
+        int[] touched = suggestionTouched;
+        int[] touchedCount = new int[1];
+        adjacency.forEachNeighbor(primaryUser, friend -> adjacency.forEachNeighbor(friend, candidate -> {
+            if (scores[candidate]++ == 0) {
+                touched[touchedCount[0]++] = candidate;
+            }
+        }));
+        // No more than the candidates can be kept, however large k is
+        TopK top = new TopK(Math.min(k, touchedCount[0]));
+        for (int t = 0; t < touchedCount[0]; t++) {
+            int candidate = touched[t];
+            if (candidate != primaryUser && !adjacency.contains(primaryUser, candidate)) {
+                top.offer(candidate, scores[candidate]);
+            }
+            scores[candidate] = 0;
+        }
+        return top.drainDescending();
+    }
+
+    /**
+     * Return a shortest chain of friendships from one profile to another ("degrees of separation").
+     *
+     * The list starts with from and ends with to, so a path of n friendships has n + 1 profiles. It is
+     * empty if either profile is not in the network or they are not connected.
+     *
+     * @param from Profile to start at
+     * @param to Profile to reach
+     */
+    public ArrayList<Profile> shortestPath(Profile from, Profile to) {
+        ArrayList<Profile> path = new ArrayList<>();
+        for (int id : shortestPath(indexOf(from), indexOf(to))) {
+            path.add(profiles.get(id));
+        }
+        return path;
+    }
+
+    /**
+     * Vertex ids along a shortest path from one vertex to another, found with a bidirectional BFS.
+     */
+    public int[] shortestPath(int from, int to) {
+        if (!isVertex(from) || !isVertex(to)) {
+            return new int[0];
+        }
+        return traversal().shortestPath(from, to);
+    }
+
+    /**
+     * Number of friendships between a profile and every vertex id, up to maxDepth hops.
+     *
+     * @param primaryUser Profile to measure from
+     * @param maxDepth largest distance to explore
+     * @return distances indexed by vertex id, -1 for vertices that are unreachable or further away
+     */
+    public int[] distancesFrom(Profile primaryUser, int maxDepth) {
+        return distancesFrom(indexOf(primaryUser), maxDepth);
+    }
+
+    public int[] distancesFrom(int primaryUser, int maxDepth) {
+        if (!isVertex(primaryUser)) {
+            return unreachable();
+        }
+        return traversal().distancesFrom(primaryUser, maxDepth);
+    }
+
+    /**
+     * Distances from a vertex id to all others with no depth limit, computed by a parallel
+     * direction-optimizing BFS. Meant for whole-graph sweeps on large networks; the network must not be
+     * modified while it runs.
+     */
+    public int[] parallelDistancesFrom(int primaryUser) {
+        if (!isVertex(primaryUser)) {
+            return unreachable();
+        }
+        return traversal().parallelDistancesFrom(primaryUser);
+    }
+
+    private int[] unreachable() {
+        int[] distances = new int[profiles.size()];
+        Arrays.fill(distances, -1);
+        return distances;
+    }
+
+    private GraphTraversal traversal() {
+        if (traversal == null) {
+            traversal = new GraphTraversal(this);
+        }
+        return traversal;
+    }
+
     /*
      * Add friend if they already exist in the network and add the friendship to the adjacency matrix.
      * 
@@ -81,6 +767,287 @@ public class SocialNetwork{
      * @param friend User that primary user is adding
      */
     public void addFriend(Profile primaryUser, Profile friend) {
-        // WRITE YOUR CODE HERE //
-    } 
+        addFriend(indexOf(primaryUser), indexOf(friend));
+    }
+
+    /**
+     * Add a friendship between two vertex ids. Does nothing if either id is not in the network.
+     */
+    public void addFriend(int primaryUser, int friend) {
+        if (!isVertex(primaryUser) || !isVertex(friend) || primaryUser == friend) {
+            return;
+        }
+        if (adjacency.add(primaryUser, friend)) {
+            adjacency.add(friend, primaryUser);
+            degree[primaryUser]++;
+            degree[friend]++;
+            friendshipCount++;
+            for (GraphListener listener : listeners) {
+                listener.friendAdded(primaryUser, friend);
+            }
+        }
+    }
+
+    /**
+     * Visit every friendship once as a pair of vertex ids (u, v) with u < v.
+     *
+     * Walks only the stored edges of the adjacency (for the dense backends, one pass over each row) and
+     * does not allocate, so callers such as the graph view can draw all edges in time proportional to
+     * the edge count instead of testing every pair with searchFriend().
+     *
+     * @param action called with the vertex ids of both friends; see getProfile(int)
+     */
+    public void forEachEdge(IntIntConsumer action) {
+        adjacency.forEachEdge(action);
+    }
+
+    /**
+     * Remove the friendship between two profiles. Does nothing if they are not friends.
+     *
+     * @param primaryUser Profile who is ending the friendship
+     * @param friend User that primary user is removing
+     */
+    public void removeFriend(Profile primaryUser, Profile friend) {
+        removeFriend(indexOf(primaryUser), indexOf(friend));
+    }
+
+    /**
+     * Remove the friendship between two vertex ids. Does nothing if either id is not in the network.
+     */
+    public void removeFriend(int primaryUser, int friend) {
+        if (!isVertex(primaryUser) || !isVertex(friend)) {
+            return;
+        }
+        if (adjacency.remove(primaryUser, friend)) {
+            adjacency.remove(friend, primaryUser);
+            degree[primaryUser]--;
+            degree[friend]--;
+            friendshipCount--;
+            for (GraphListener listener : listeners) {
+                listener.friendRemoved(primaryUser, friend);
+            }
+        }
+    }
+
+    /**
+     * Remove a profile and all of its friendships from the network.
+     *
+     * The last profile is moved into the freed vertex id (swap-with-last), so this costs O(degree) edge
+     * updates plus one row scan instead of shifting every later row and column. The ids of all other
+     * profiles stay the same; only the profile that was last, at id size()-1, gets a new id, which is
+     * the id the removed profile had.
+     *
+     * @param profile Profile to remove
+     * @return true if the profile was in the network
+     * @throws UnsupportedOperationException if the network is read-only (see freeze()), before anything
+     *         is changed or any listener is called
+     */
+    public boolean removeProfile(Profile profile) {
+        int id = indexOf(profile);
+        if (id < 0) {
+            return false;
+        }
+        if (adjacency.isReadOnly()) {
+            throw new UnsupportedOperationException("Cannot remove a profile from a read-only network");
+        }
+        for (GraphListener listener : listeners) {
+            listener.profileRemoving(id);
+        }
+        for (int friend : adjacency.neighbors(id)) {
+            removeFriend(id, friend);
+        }
+        int last = profiles.size() - 1;
+        if (id != last) {
+            for (int friend : adjacency.neighbors(last)) {
+                removeFriend(last, friend);
+                addFriend(id, friend);
+            }
+            Profile moved = profiles.get(last);
+            profiles.set(id, moved);
+            usernames().put(moved.getUsername(), id);
+        }
+        profiles.remove(last);
+        adjacency.truncate(last);
+        usernames().remove(profile.getUsername());
+        profile.leftNetwork(this);
+        for (GraphListener listener : listeners) {
+            listener.profileRemoved(id, last);
+        }
+        return true;
+    }
+
+    /**
+     * Add many friendships at once.
+     *
+     * Each element of pairs is a {primaryUser, friend} array. The result is the same as calling
+     * addFriend() for every pair, but profiles are looked up once and the edges are applied in parallel.
+     *
+     * @param pairs friendships to add
+     * @return how many friendships were added, already existed, or were rejected
+     */
+    public BatchResult addFriends(Iterable<Profile[]> pairs) {
+        int[] primaryUsers = new int[16];
+        int[] friends = new int[16];
+        int count = 0;
+        for (Profile[] pair : pairs) {
+            if (count == primaryUsers.length) {
+                primaryUsers = Arrays.copyOf(primaryUsers, count * 2);
+                friends = Arrays.copyOf(friends, count * 2);
+            }
+            boolean valid = pair != null && pair.length == 2;
+            primaryUsers[count] = valid ? indexOf(pair[0]) : -1;
+            friends[count] = valid ? indexOf(pair[1]) : -1;
+            count++;
+        }
+        return addFriends(primaryUsers, friends, count);
+    }
+
+    /**
+     * Add the friendships (primaryUsers[k], friends[k]) for every k, by vertex id.
+     *
+     * @param primaryUsers vertex ids of the users initiating each friendship
+     * @param friends vertex ids of the users being added, parallel to primaryUsers
+     * @return how many friendships were added, already existed, or were rejected
+     */
+    public BatchResult addFriends(int[] primaryUsers, int[] friends) {
+        if (primaryUsers.length != friends.length) {
+            throw new IllegalArgumentException("primaryUsers and friends must have the same length");
+        }
+        return addFriends(primaryUsers, friends, primaryUsers.length);
+    }
+
+    /*
+     * Validate, dedupe and apply the first count pairs.
+     *
+     * Valid pairs are packed into one long per undirected edge (smaller id in the high half), sorted and
+     * deduplicated. The surviving edges are then bucketed by row so each row is written by exactly one
+     * task, which lets the rows be filled in parallel without locking.
+     */
+    private BatchResult addFriends(int[] primaryUsers, int[] friends, int count) {
+        int n = profiles.size();
+        long[] edges = new long[count];
+        int valid = 0;
+        for (int k = 0; k < count; k++) {
+            int u = primaryUsers[k];
+            int v = friends[k];
+            if (isVertex(u) && isVertex(v) && u != v) {
+                edges[valid++] = ((long) Math.min(u, v) << 32) | Math.max(u, v);
+            }
+        }
+        int rejected = count - valid;
+        Arrays.parallelSort(edges, 0, valid);
+        int unique = 0;
+        for (int k = 0; k < valid; k++) {
+            if (unique == 0 || edges[k] != edges[unique - 1]) {
+                edges[unique++] = edges[k];
+            }
+        }
+
+        // Bucket both directions of every edge by row (counting sort)
+        int[] offsets = new int[n + 1];
+        for (int k = 0; k < unique; k++) {
+            offsets[(int) (edges[k] >>> 32) + 1]++;
+            offsets[(int) edges[k] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] targets = new int[2 * unique];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int k = 0; k < unique; k++) {
+            int u = (int) (edges[k] >>> 32);
+            int v = (int) edges[k];
+            targets[next[u]++] = v;
+            targets[next[v]++] = u;
+        }
+
+        // Only the u < v direction is counted so every new edge is counted once. When someone is
+        // listening, new edges are also marked in isNew (each slot is written by its row's task only).
+        boolean[] isNew = listeners.isEmpty() ? null : new boolean[targets.length];
+        IntStream rows = IntStream.range(0, n);
+        if (unique >= PARALLEL_BATCH_THRESHOLD) {
+            rows = rows.parallel();
+        }
+        int added = rows.map(row -> {
+            int newEdges = 0;
+            for (int k = offsets[row]; k < offsets[row + 1]; k++) {
+                if (adjacency.add(row, targets[k])) {
+                    degree[row]++;
+                    if (row < targets[k]) {
+                        newEdges++;
+                        if (isNew != null) {
+                            isNew[k] = true;
+                        }
+                    }
+                }
+            }
+            return newEdges;
+        }).sum();
+        friendshipCount += added;
+        if (isNew != null && added > 0) {
+            int[] us = new int[added];
+            int[] vs = new int[added];
+            int k = 0;
+            for (int row = 0; row < n; row++) {
+                for (int e = offsets[row]; e < offsets[row + 1]; e++) {
+                    if (isNew[e]) {
+                        us[k] = row;
+                        vs[k++] = targets[e];
+                    }
+                }
+            }
+            for (GraphListener listener : listeners) {
+                listener.friendsAdded(us, vs, added);
+            }
+        }
+        return new BatchResult(added, valid - added, rejected);
+    }
+
+    /**
+     * One page of a friend list, from friends().
+     */
+    public static final class FriendPage {
+        /** Cursor for the first page. */
+        public static final int START = -1;
+        /** nextCursor of the last page. */
+        public static final int END = -2;
+
+        /** The friends on this page, in increasing vertex id order; unmodifiable. */
+        public final List<Profile> friends;
+        /** Cursor for the page after this one, or END. */
+        public final int nextCursor;
+
+        FriendPage(ArrayList<Profile> friends, int nextCursor) {
+            this.friends = Collections.unmodifiableList(friends);
+            this.nextCursor = nextCursor;
+        }
+
+        /** Whether there are friends after this page. */
+        public boolean hasMore() {
+            return nextCursor != END;
+        }
+    }
+
+    /**
+     * Outcome of a bulk addFriends() call.
+     */
+    public static final class BatchResult {
+        /** Friendships that did not exist before. */
+        public final int added;
+        /** Pairs that were already friends or appeared more than once in the batch. */
+        public final int duplicates;
+        /** Pairs naming a missing profile, or a profile and itself. */
+        public final int rejected;
+
+        BatchResult(int added, int duplicates, int rejected) {
+            this.added = added;
+            this.duplicates = duplicates;
+            this.rejected = rejected;
+        }
+
+        @Override
+        public String toString() {
+            return added + " added, " + duplicates + " duplicates, " + rejected + " rejected";
+        }
+    }
 }
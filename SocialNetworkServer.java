@@ -0,0 +1,416 @@
+package src.graph;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Headless HTTP/JSON front end for a SocialNetwork.
+ *
+ * Usage:
+ * <pre>
+ *   java src.graph.SocialNetworkServer [port] [data/network]
+ * </pre>
+ * With a base path the network is recovered from and logged to a WriteAheadLog (see there), otherwise
+ * it starts empty and lives in memory. The default port is 8080. The network is an
+ * InstrumentedSocialNetwork, with its metrics at /metrics and as MBeans named "server".
+ *
+ * Endpoints, all answering JSON. Parameters are taken from the query string and, for POST, from an
+ * application/x-www-form-urlencoded body.
+ * <pre>
+ *   POST /profiles     username, name, image   create a profile: 201, or 409 if the username is taken
+ *   POST /friends      user, friend            add a friendship: {"added":true|false}
+ *   GET  /friendship   user, friend            search for a friendship: {"friends":true|false}
+ *   GET  /friends      user, [limit, cursor]   list the friends of user, or with limit one page of them;
+ *                                              a page ends with "nextCursor" to pass for the next one
+ *   GET  /suggestions  user, k (default 10)    "people you may know" for user, k from 1 to 1000
+ *   GET  /metrics                              Prometheus metrics, if the network is an InstrumentedSocialNetwork
+ * </pre>
+ * Unknown usernames answer 404, missing or malformed parameters 400.
+ *
+ * Requests run one per thread on VirtualThreads.newPerTaskExecutor(), so on Java 21+ each request gets
+ * its own virtual thread. The network is not thread-safe: changes hold the write lock of a
+ * ReentrantReadWriteLock and queries the read lock, so queries run in parallel with each other. Friend
+ * lists are copied under the lock and then streamed as a chunked response, so a client reading a long
+ * list slowly holds up no writer and the JSON is never built in memory as a whole.
+ *
+ * The JDK server writes response headers and body separately. With Nagle's algorithm the body then
+ * waits for the client's delayed ACK, about 40 ms on every keep-alive request. main() turns Nagle off
+ * with the JVM-wide property sun.net.httpserver.nodelay; an application that embeds the server should
+ * start the JVM with -Dsun.net.httpserver.nodelay=true for the same latency.
+ */
+public class SocialNetworkServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_SUGGESTIONS = 10;
+    private static final int MAX_SUGGESTIONS = 1000;
+    // Form bodies larger than this are rejected
+    private static final int MAX_BODY_BYTES = 1 << 16;
+
+    private final SocialNetwork network;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // suggestFriends() reuses scratch arrays of the network, so suggestions also take this lock to run
+    // one at a time while other queries go on beside them
+    private final ReentrantLock suggestionLock = new ReentrantLock();
+    private final HttpServer server;
+    private final ExecutorService executor = VirtualThreads.newPerTaskExecutor("http");
+
+    /**
+     * Create a server for network on port, or on a free port if port is 0. Call start() to accept
+     * requests. From then on the network must only be changed through the server.
+     */
+    public SocialNetworkServer(SocialNetwork network, int port) throws IOException {
+        this.network = network;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/profiles", handler("POST", this::createProfile));
+        HttpHandler list = handler("GET", this::listFriends);
+        HttpHandler add = handler("POST", this::addFriend);
+        server.createContext("/friends", exchange -> (exchange.getRequestMethod().equals("GET") ? list : add).handle(exchange));
+        server.createContext("/friendship", handler("GET", this::searchFriend));
+        server.createContext("/suggestions", handler("GET", this::suggestions));
+        if (network instanceof InstrumentedSocialNetwork) {
+            server.createContext("/metrics", handler("GET", this::metrics));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Read once, when the first HttpServer is created; see the class comment
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        InstrumentedSocialNetwork network = new InstrumentedSocialNetwork(new ArrayList<>(), new SparseAdjacency());
+        WriteAheadLog log = args.length > 1
+            ? WriteAheadLog.open(Paths.get(args[1]), network, WriteAheadLog.Durability.GROUP)
+            : null;
+        network.registerMBeans("server");
+        SocialNetworkServer server = new SocialNetworkServer(network, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            if (log != null) {
+                try {
+                    log.close();
+                } catch (IOException e) {
+                    System.err.println("Closing the log failed: " + e);
+                }
+            }
+        }));
+        server.start();
+        System.out.println("Serving " + network.size() + " profiles on port " + server.port());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * The port the server listens on.
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop accepting requests, give running ones up to a second to finish, and stop the request threads.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void createProfile(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String username = required(params, "username");
+        String name = required(params, "name");
+        String image = params.get("image");
+        Profile profile = new Profile(username, name, image == null || image.isEmpty() ? null : image);
+        boolean added;
+        lock.writeLock().lock();
+        try {
+            added = network.indexOf(username) < 0;
+            if (added) {
+                network.addProfile(profile);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!added) {
+            sendError(exchange, 409, "Username '" + username + "' is already taken");
+            return;
+        }
+        StringBuilder json = new StringBuilder();
+        appendProfile(json, username, name, profile.getProfileImage());
+        send(exchange, 201, json);
+    }
+
+    private void addFriend(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String user = required(params, "user");
+        String friend = required(params, "friend");
+        boolean added;
+        lock.writeLock().lock();
+        try {
+            int u = existing(user);
+            int v = existing(friend);
+            if (u == v) {
+                throw new BadRequest(400, "A profile cannot befriend itself");
+            }
+            added = !network.searchFriend(u, v);
+            network.addFriend(u, v);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        send(exchange, 200, new StringBuilder("{\"added\":").append(added).append('}'));
+    }
+
+    private void searchFriend(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String user = required(params, "user");
+        String friend = required(params, "friend");
+        boolean friends;
+        lock.readLock().lock();
+        try {
+            friends = network.searchFriend(existing(user), existing(friend));
+        } finally {
+            lock.readLock().unlock();
+        }
+        send(exchange, 200, new StringBuilder("{\"friends\":").append(friends).append('}'));
+    }
+
+    private void listFriends(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String user = required(params, "user");
+        boolean paged = params.containsKey("limit");
+        int limit = paged ? number(params, "limit") : 0;
+        int cursor = params.containsKey("cursor") ? number(params, "cursor") : SocialNetwork.FriendPage.START;
+        if (paged && limit <= 0) {
+            throw new BadRequest(400, "Parameter 'limit' must be positive");
+        }
+        List<Profile> friends;
+        int count;
+        int nextCursor = SocialNetwork.FriendPage.END;
+        lock.readLock().lock();
+        try {
+            int id = existing(user);
+            count = network.degree(id);
+            if (paged) {
+                SocialNetwork.FriendPage page = network.friends(id, cursor, limit);
+                friends = page.friends;
+                nextCursor = page.nextCursor;
+            } else {
+                friends = network.allFriends(id);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        // Length 0 means chunked: the list goes out as it is written
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new OutputStreamWriter(new BufferedOutputStream(exchange.getResponseBody(), 1 << 16),
+                StandardCharsets.UTF_8)) {
+            out.write("{\"user\":");
+            appendString(out, user);
+            out.write(",\"count\":" + count + ",\"friends\":[");
+            for (int i = 0; i < friends.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                Profile p = friends.get(i);
+                appendProfile(out, p.getUsername(), p.getName(), p.getProfileImage());
+            }
+            out.write(']');
+            if (nextCursor != SocialNetwork.FriendPage.END) {
+                out.write(",\"nextCursor\":" + nextCursor);
+            }
+            out.write('}');
+        }
+    }
+
+    private void suggestions(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String user = required(params, "user");
+        int k = params.containsKey("k") ? number(params, "k") : DEFAULT_SUGGESTIONS;
+        if (k <= 0 || k > MAX_SUGGESTIONS) {
+            throw new BadRequest(400, "Parameter 'k' must be between 1 and " + MAX_SUGGESTIONS);
+        }
+        ArrayList<Profile> suggestions = new ArrayList<>();
+        lock.readLock().lock();
+        suggestionLock.lock();
+        try {
+            for (int id : network.suggestFriends(existing(user), k)) {
+                suggestions.add(network.getProfile(id));
+            }
+        } finally {
+            suggestionLock.unlock();
+            lock.readLock().unlock();
+        }
+        StringBuilder json = new StringBuilder("{\"suggestions\":[");
+        for (int i = 0; i < suggestions.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            Profile p = suggestions.get(i);
+            appendProfile(json, p.getUsername(), p.getName(), p.getProfileImage());
+        }
+        send(exchange, 200, json.append("]}"));
+    }
+
+    private void metrics(HttpExchange exchange, Map<String, String> params) throws IOException {
+        StringBuilder text = new StringBuilder();
+        ((InstrumentedSocialNetwork) network).writeMetrics(text);
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // Vertex id of username; only call while holding the lock
+    private int existing(String username) {
+        int id = network.indexOf(username);
+        if (id < 0) {
+            throw new BadRequest(404, "No profile '" + username + "'");
+        }
+        return id;
+    }
+
+    private interface Endpoint {
+        void handle(HttpExchange exchange, Map<String, String> params) throws IOException;
+    }
+
+    // Rejected request, answered with status and an {"error": ...} body
+    private static final class BadRequest extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        BadRequest(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static HttpHandler handler(String method, Endpoint endpoint) {
+        return exchange -> {
+            try {
+                if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    sendError(exchange, 405, "Use " + method);
+                    return;
+                }
+                endpoint.handle(exchange, params(exchange));
+            } catch (BadRequest e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (RuntimeException e) {
+                sendError(exchange, 500, e.toString());
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        HashMap<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new BadRequest(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            if (type != null && type.startsWith("application/x-www-form-urlencoded")) {
+                parseForm(new String(body, StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            try {
+                params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequest(400, "Malformed parameter '" + pair + "'");
+            }
+        }
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new BadRequest(400, "Missing parameter '" + name + "'");
+        }
+        return value;
+    }
+
+    private static int number(Map<String, String> params, String name) {
+        try {
+            return Integer.parseInt(params.get(name));
+        } catch (NumberFormatException e) {
+            throw new BadRequest(400, "Parameter '" + name + "' is not a number");
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        send(exchange, status, json.append('}'));
+    }
+
+    private static void appendProfile(Appendable out, String username, String name, String image) throws IOException {
+        out.append("{\"username\":");
+        appendString(out, username);
+        out.append(",\"name\":");
+        appendString(out, name);
+        if (image != null) {
+            out.append(",\"image\":");
+            appendString(out, image);
+        }
+        out.append('}');
+    }
+
+    // s as a JSON string literal
+    private static void appendString(Appendable out, String s) throws IOException {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
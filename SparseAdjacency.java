@@ -0,0 +1,269 @@
+package src.graph;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Adjacency lists stored as one sorted int[] of neighbor ids per vertex.
+ *
+ * Memory is O(vertices + edges), so this is the backend to use for large, sparse friendship graphs.
+ * Each row grows in place by doubling. contains() is a binary search over the row, and degree() and
+ * forEachNeighbor() cost O(1) and O(degree) instead of O(n).
+ *
+ * snapshot() shares the rows with the snapshot instead of copying them. Each row records the version
+ * it was last copied in; a row older than the latest snapshot may be shared, and the next add() or
+ * remove() on it works on a copy.
+ */
+public class SparseAdjacency implements Adjacency {
+    private static final int[] EMPTY = new int[0];
+
+    private int[][] neighbors;
+    private int[] degrees;
+    private int size;
+    // Number of snapshots taken, and for each row the value it had when the row was last copied
+    private int version;
+    private int[] rowVersions;
+    private final boolean readOnly;
+
+    public SparseAdjacency() {
+        this(0);
+    }
+
+    /**
+     * @param initialCapacity number of vertices to allocate room for
+     */
+    public SparseAdjacency(int initialCapacity) {
+        this.neighbors = new int[initialCapacity][];
+        this.degrees = new int[initialCapacity];
+        this.rowVersions = new int[initialCapacity];
+        this.readOnly = false;
+    }
+
+    // A snapshot, sharing rows with the adjacency it was taken from
+    private SparseAdjacency(int[][] neighbors, int[] degrees, int size) {
+        this.neighbors = neighbors;
+        this.degrees = degrees;
+        this.size = size;
+        this.readOnly = true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return neighbors.length;
+    }
+
+    @Override
+    public void reserve(int minCapacity) {
+        checkWritable();
+        if (minCapacity > neighbors.length) {
+            neighbors = Arrays.copyOf(neighbors, minCapacity);
+            degrees = Arrays.copyOf(degrees, minCapacity);
+            rowVersions = Arrays.copyOf(rowVersions, minCapacity);
+        }
+    }
+
+    @Override
+    public void grow(int newSize) {
+        checkWritable();
+        if (newSize > neighbors.length) {
+            reserve(Math.max(newSize, neighbors.length * 2));
+        }
+        for (int i = size; i < newSize; i++) {
+            neighbors[i] = EMPTY;
+        }
+        size = Math.max(size, newSize);
+    }
+
+    @Override
+    public void truncate(int newSize) {
+        checkWritable();
+        for (int i = newSize; i < size; i++) {
+            neighbors[i] = null;
+        }
+        size = Math.min(size, newSize);
+    }
+
+    @Override
+    public boolean contains(int row, int col) {
+        return Arrays.binarySearch(neighbors[row], 0, degrees[row], col) >= 0;
+    }
+
+    @Override
+    public boolean add(int row, int col) {
+        checkWritable();
+        int[] r = neighbors[row];
+        int degree = degrees[row];
+        int pos = Arrays.binarySearch(r, 0, degree, col);
+        if (pos >= 0) {
+            return false;
+        }
+        pos = -pos - 1;
+        if (degree == r.length || rowVersions[row] != version) {
+            // A full row is copied into a larger one anyway, which also unshares it
+            r = Arrays.copyOf(r, degree == r.length ? Math.max(4, degree * 2) : r.length);
+            neighbors[row] = r;
+            rowVersions[row] = version;
+        }
+        System.arraycopy(r, pos, r, pos + 1, degree - pos);
+        r[pos] = col;
+        degrees[row] = degree + 1;
+        return true;
+    }
+
+    @Override
+    public boolean remove(int row, int col) {
+        checkWritable();
+        int[] r = neighbors[row];
+        int degree = degrees[row];
+        int pos = Arrays.binarySearch(r, 0, degree, col);
+        if (pos < 0) {
+            return false;
+        }
+        if (rowVersions[row] != version) {
+            r = r.clone();
+            neighbors[row] = r;
+            rowVersions[row] = version;
+        }
+        System.arraycopy(r, pos + 1, r, pos, degree - pos - 1);
+        degrees[row] = degree - 1;
+        return true;
+    }
+
+    @Override
+    public int degree(int row) {
+        return degrees[row];
+    }
+
+    @Override
+    public void forEachNeighbor(int row, IntConsumer action) {
+        int[] r = neighbors[row];
+        int degree = degrees[row];
+        for (int k = 0; k < degree; k++) {
+            action.accept(r[k]);
+        }
+    }
+
+    @Override
+    public boolean anyNeighbor(int row, IntPredicate predicate) {
+        int[] r = neighbors[row];
+        int degree = degrees[row];
+        for (int k = 0; k < degree; k++) {
+            if (predicate.test(r[k])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachCommonNeighbor(int a, int b, IntConsumer action) {
+        int[] ra = neighbors[a];
+        int[] rb = neighbors[b];
+        int i = 0;
+        int j = 0;
+        int da = degrees[a];
+        int db = degrees[b];
+        // Merge the two sorted rows
+        while (i < da && j < db) {
+            if (ra[i] < rb[j]) {
+                i++;
+            } else if (ra[i] > rb[j]) {
+                j++;
+            } else {
+                action.accept(ra[i]);
+                i++;
+                j++;
+            }
+        }
+    }
+
+    @Override
+    public int countCommonNeighbors(int a, int b) {
+        int[] ra = neighbors[a];
+        int[] rb = neighbors[b];
+        int i = 0;
+        int j = 0;
+        int da = degrees[a];
+        int db = degrees[b];
+        int count = 0;
+        while (i < da && j < db) {
+            int x = ra[i];
+            int y = rb[j];
+            if (x <= y) {
+                i++;
+            }
+            if (y <= x) {
+                j++;
+            }
+            if (x == y) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int nextNeighbor(int row, int from) {
+        int[] r = neighbors[row];
+        int degree = degrees[row];
+        int pos = Arrays.binarySearch(r, 0, degree, from);
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
+        return pos < degree ? r[pos] : -1;
+    }
+
+    @Override
+    public void forEachEdge(IntIntConsumer action) {
+        for (int u = 0; u < size; u++) {
+            int[] r = neighbors[u];
+            int degree = degrees[u];
+            // Rows are sorted, so the neighbors above u form a suffix
+            int k = Arrays.binarySearch(r, 0, degree, u);
+            for (k = k >= 0 ? k + 1 : -k - 1; k < degree; k++) {
+                action.accept(u, r[k]);
+            }
+        }
+    }
+
+    /**
+     * Costs O(n): the row references and degrees are copied, the rows themselves are shared.
+     */
+    @Override
+    public Adjacency snapshot() {
+        if (readOnly) {
+            return this;
+        }
+        version++;
+        return new SparseAdjacency(Arrays.copyOf(neighbors, size), Arrays.copyOf(degrees, size), size);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("SparseAdjacency snapshot is read-only");
+        }
+    }
+
+    @Override
+    public long bytesUsed() {
+        long bytes = 16 + 4L * neighbors.length + 16 + 4L * degrees.length
+            + (rowVersions == null ? 0 : 16 + 4L * rowVersions.length);
+        for (int i = 0; i < size; i++) {
+            if (neighbors[i] != EMPTY) {
+                bytes += 16 + 4L * neighbors[i].length;
+            }
+        }
+        return bytes;
+    }
+}
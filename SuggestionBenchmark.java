@@ -0,0 +1,101 @@
+package src.graph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares mutualFriendCount()/suggestFriends() with the obvious allFriends()-based versions.
+ *
+ * Usage: java src.graph.SuggestionBenchmark [profiles] [friendsPerProfile] [queries]
+ *
+ * Rough wall-clock figures; the JIT is warmed up by a first round whose results are discarded.
+ */
+public class SuggestionBenchmark {
+    // Keeps the JIT from discarding results
+    private static long sink;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int friends = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+        System.out.printf("%d profiles, %d friends per profile, %d queries%n", n, friends, queries);
+        System.out.printf("%-20s %16s %16s %16s %16s%n", "backend", "mutual/s", "naive mutual/s",
+            "suggest/s", "naive suggest/s");
+        for (int round = 0; round < 2; round++) {
+            run("BitMatrixAdjacency", new SocialNetwork(new ArrayList<>(), new BitMatrixAdjacency()), n, friends, queries);
+            run("SparseAdjacency", new SocialNetwork(new ArrayList<>(), new SparseAdjacency()), n, friends, queries);
+        }
+    }
+
+    private static void run(String name, SocialNetwork network, int n, int friends, int queries) {
+        ArrayList<Profile> profiles = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            profiles.add(new Profile("user" + i, "User " + i, null));
+        }
+        network.addProfiles(profiles);
+        Random random = new Random(42);
+        int edges = n * friends / 2;
+        int[] us = new int[edges];
+        int[] vs = new int[edges];
+        for (int e = 0; e < edges; e++) {
+            us[e] = random.nextInt(n);
+            vs[e] = random.nextInt(n);
+        }
+        network.addFriends(us, vs);
+
+        long start = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            sink += network.mutualFriendCount(random.nextInt(n), random.nextInt(n));
+        }
+        double mutual = queries / seconds(start);
+
+        start = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            HashSet<Profile> a = new HashSet<>(network.allFriends(profiles.get(random.nextInt(n))));
+            a.retainAll(network.allFriends(profiles.get(random.nextInt(n))));
+            sink += a.size();
+        }
+        double naiveMutual = queries / seconds(start);
+
+        start = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            sink += network.suggestFriends(random.nextInt(n), 10).length;
+        }
+        double suggest = queries / seconds(start);
+
+        start = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            sink += naiveSuggest(network, profiles.get(random.nextInt(n)), 10).size();
+        }
+        double naiveSuggest = queries / seconds(start);
+
+        System.out.printf("%-20s %16.0f %16.0f %16.0f %16.0f%n", name, mutual, naiveMutual, suggest, naiveSuggest);
+    }
+
+    private static List<Profile> naiveSuggest(SocialNetwork network, Profile p, int k) {
+        HashMap<Profile, Integer> counts = new HashMap<>();
+        ArrayList<Profile> friends = network.allFriends(p);
+        for (Profile friend : friends) {
+            for (Profile candidate : network.allFriends(friend)) {
+                if (!candidate.equals(p) && !network.searchFriend(p, candidate)) {
+                    counts.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+        List<Map.Entry<Profile, Integer>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((x, y) -> y.getValue() - x.getValue());
+        List<Profile> top = new ArrayList<>();
+        for (int i = 0; i < Math.min(k, entries.size()); i++) {
+            top.add(entries.get(i).getKey());
+        }
+        return top;
+    }
+
+    private static double seconds(long startNanos) {
+        return Math.max(1, System.nanoTime() - startNanos) / 1e9;
+    }
+}
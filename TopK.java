@@ -0,0 +1,77 @@
+package src.graph;
+
+/**
+ * Keeps the k highest-scoring ids seen so far in a bounded min-heap of primitive longs.
+ *
+ * Each entry packs the score into the high 32 bits and the complemented id into the low 32 bits, so
+ * comparing entries orders by score and then by lower id first, without boxing. Adding n candidates
+ * costs O(n log k).
+ */
+final class TopK {
+    private final long[] heap;
+    private int size;
+
+    TopK(int k) {
+        this.heap = new long[Math.max(0, k)];
+    }
+
+    /**
+     * Offer an id with a non-negative score.
+     */
+    void offer(int id, int score) {
+        long entry = ((long) score << 32) | (~id & 0xFFFFFFFFL);
+        if (size < heap.length) {
+            heap[size] = entry;
+            siftUp(size++);
+        } else if (size > 0 && entry > heap[0]) {
+            heap[0] = entry;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * The kept ids, highest score first. Empties the heap.
+     */
+    int[] drainDescending() {
+        int[] ids = new int[size];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = ~(int) heap[0];
+            heap[0] = heap[--size];
+            siftDown(0);
+        }
+        return ids;
+    }
+
+    private void siftUp(int i) {
+        long entry = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= entry) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    private void siftDown(int i) {
+        if (size == 0) {
+            return;
+        }
+        long entry = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (entry <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = entry;
+    }
+}
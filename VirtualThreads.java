@@ -0,0 +1,29 @@
+package src.graph;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors for short, blocking tasks such as image downloads and HTTP requests.
+ *
+ * On Java 21+ this returns a virtual-thread-per-task executor. The sources compile against Java 17,
+ * so the factory is looked up reflectively and older runtimes fall back to a cached pool of daemon
+ * threads.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    static ExecutorService newPerTaskExecutor(String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
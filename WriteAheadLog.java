@@ -0,0 +1,688 @@
+package src.graph;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
+
+/**
+ * Makes a SocialNetwork durable: every change is appended to a log, and the log is folded into a
+ * snapshot from time to time.
+ *
+ * For a base path such as data/network, the snapshot is data/network.snet (see MappedSnapshot) and the
+ * log is a series of segments data/network.1.wal, data/network.2.wal, ... open() recovers the network
+ * by loading the snapshot and replaying every logged change made after it, then keeps logging the
+ * changes made to the recovered network, which it follows as a GraphListener.
+ *
+ * Each change is one record with a sequence number (LSN). A record is framed as
+ * <pre>
+ *   int length, int crc32 of the body, body: byte type, long lsn, payload
+ * </pre>
+ * so a record torn by a crash is detected and dropped at recovery. Records are collected in memory and
+ * written by a background flusher thread, which fsyncs all records that arrived since its last write
+ * at once (group commit). How long a change may wait for that is the Durability.
+ *
+ * compact() writes a new snapshot in the background and then deletes the log segments it covers.
+ *
+ * The network must still only be used from one thread at a time, and compact() must be called from
+ * that thread too.
+ */
+public class WriteAheadLog implements Closeable {
+
+    /** How far a change has to get before the call that made it returns. */
+    public enum Durability {
+        /**
+         * Wait until the change is fsynced. Changes made while a flush is running share the next
+         * fsync, but a single writer pays one fsync per change.
+         */
+        SYNC,
+        /**
+         * Return at once and fsync every flush interval, so a power failure loses at most that much
+         * time of changes.
+         */
+        GROUP,
+        /**
+         * Return at once and hand changes to the operating system every flush interval without
+         * fsyncing. Survives the process crashing but not the machine; sync() and close() still fsync.
+         */
+        ASYNC
+    }
+
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+    // Wake the flusher early once this much is buffered
+    private static final int FLUSH_BYTES = 1 << 20;
+
+    private static final byte ADD_PROFILE = 1;
+    private static final byte ADD_FRIEND = 2;
+    private static final byte ADD_FRIENDS = 3;
+    private static final byte REMOVE_FRIEND = 4;
+    private static final byte REMOVE_PROFILE = 5;
+    private static final byte RENAME = 6;
+
+    private final Path snapshotFile;
+    private final Path base;
+    private final Durability durability;
+    private final long flushIntervalMillis;
+    private final SocialNetwork network;
+    private final GraphListener listener = new Recorder();
+    private final Thread flusher;
+    private final ExecutorService compactor = VirtualThreads.newPerTaskExecutor("wal-compactor");
+
+    // Guarded by this: the buffer being filled, the segment being written, and the flush progress
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    private FileChannel segment;
+    private int segmentNumber;
+    private long lastLsn;
+    // Last record written to the segment, and last record fsynced
+    private long flushedLsn;
+    private long syncedLsn;
+    private long pendingSince;
+    private boolean forceRequested;
+    private boolean flushing;
+    private IOException failure;
+    private boolean closed;
+
+    private CompletableFuture<Void> compaction = CompletableFuture.completedFuture(null);
+
+    private WriteAheadLog(Path base, Durability durability, long flushIntervalMillis, SocialNetwork network,
+            FileChannel segment, int segmentNumber, long lastLsn) {
+        this.base = base;
+        this.snapshotFile = base.resolveSibling(base.getFileName() + ".snet");
+        this.durability = durability;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.network = network;
+        this.segment = segment;
+        this.segmentNumber = segmentNumber;
+        this.lastLsn = lastLsn;
+        this.flushedLsn = lastLsn;
+        this.syncedLsn = lastLsn;
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        network.addListener(listener);
+    }
+
+    /**
+     * Recover the network stored under base with the default flush interval of 10 ms.
+     *
+     * @see #open(Path, Adjacency, Durability, long)
+     */
+    public static WriteAheadLog open(Path base, Adjacency adjacency, Durability durability) throws IOException {
+        return open(base, adjacency, durability, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Recover the network stored under base and start logging its changes.
+     *
+     * Loads base.snet if it exists (otherwise starts from an empty network) and replays the records of
+     * every log segment that came after it. A torn record at the end of the last segment, left by a
+     * crash during a write, is cut off.
+     *
+     * @param base path of the files without extension; its directory must exist
+     * @param adjacency empty edge storage for the recovered network
+     * @param durability when changes count as done
+     * @param flushIntervalMillis how often GROUP and ASYNC flush
+     * @throws IOException if the files cannot be read, or a record other than the last is damaged
+     */
+    public static WriteAheadLog open(Path base, Adjacency adjacency, Durability durability,
+            long flushIntervalMillis) throws IOException {
+        return open(base, new SocialNetwork(new ArrayList<>(), adjacency), durability, flushIntervalMillis);
+    }
+
+    /**
+     * Recover the network stored under base into the given empty network, with the default flush
+     * interval of 10 ms.
+     *
+     * @see #open(Path, SocialNetwork, Durability, long)
+     */
+    public static WriteAheadLog open(Path base, SocialNetwork network, Durability durability) throws IOException {
+        return open(base, network, durability, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Recover the network stored under base into the given empty network, e.g. an
+     * InstrumentedSocialNetwork, and start logging its changes.
+     *
+     * @see #open(Path, Adjacency, Durability, long)
+     * @throws IllegalArgumentException if network is not empty
+     */
+    public static WriteAheadLog open(Path base, SocialNetwork network, Durability durability,
+            long flushIntervalMillis) throws IOException {
+        if (network.size() != 0) {
+            throw new IllegalArgumentException("network must be empty");
+        }
+        Path snapshotFile = base.resolveSibling(base.getFileName() + ".snet");
+        long lsn = 0;
+        if (Files.exists(snapshotFile)) {
+            MappedSnapshot snapshot = MappedSnapshot.open(snapshotFile);
+            lsn = snapshot.sequence();
+            SocialNetwork.load(snapshot, network);
+        }
+
+        TreeMap<Integer, Path> segments = segments(base);
+        int number = segments.isEmpty() ? 1 : segments.lastKey();
+        for (Map.Entry<Integer, Path> entry : segments.entrySet()) {
+            boolean last = entry.getKey() == number;
+            lsn = replay(entry.getValue(), network, lsn, last);
+        }
+        FileChannel channel = FileChannel.open(segmentPath(base, number), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new WriteAheadLog(base, durability, flushIntervalMillis, network, channel, number, lsn);
+    }
+
+    /**
+     * The recovered network. Its changes are logged until close().
+     */
+    public SocialNetwork network() {
+        return network;
+    }
+
+    /**
+     * Sequence number of the last record appended.
+     */
+    public synchronized long lastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * Sequence number of the last record written to the log file. With ASYNC it may not be fsynced yet.
+     */
+    public synchronized long flushedLsn() {
+        return flushedLsn;
+    }
+
+    /**
+     * Write and fsync every record appended so far, whatever the durability.
+     */
+    public synchronized void sync() throws IOException {
+        forceRequested = true;
+        notifyAll();
+        long lsn = lastLsn;
+        boolean interrupted = false;
+        while (syncedLsn < lsn && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Fold the log into a new snapshot in the background.
+     *
+     * Starts a new log segment, then writes a copy of the network as it is now to the snapshot file
+     * on another thread and deletes the older segments once the snapshot is in place. If a compaction is
+     * still running, returns that one instead of starting another.
+     *
+     * @return completes when the snapshot is written and the old segments are deleted
+     */
+    public CompletableFuture<Void> compact() throws IOException {
+        if (!compaction.isDone()) {
+            return compaction;
+        }
+        sync();
+        SocialNetwork copy = network.detachedCopy();
+        long sequence;
+        int firstKept;
+        synchronized (this) {
+            // Only the network's thread appends, so once the flusher is idle nothing more goes to the
+            // old segment
+            while (flushing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while switching log segments", e);
+                }
+            }
+            sequence = lastLsn;
+            firstKept = segmentNumber + 1;
+            FileChannel next = FileChannel.open(segmentPath(base, firstKept), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            segment.close();
+            segment = next;
+            segmentNumber = firstKept;
+        }
+        compaction = CompletableFuture.runAsync(() -> {
+            try {
+                MappedSnapshot.write(copy, snapshotFile, sequence);
+                for (Path old : segments(base).headMap(firstKept).values()) {
+                    Files.deleteIfExists(old);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, compactor);
+        return compaction;
+    }
+
+    /**
+     * Stop logging, fsync what is left and wait for a running compaction.
+     *
+     * The flusher, the compactor and the segment are shut down even if a step fails; the first failure
+     * is thrown with any later ones attached as suppressed exceptions.
+     */
+    @Override
+    public void close() throws IOException {
+        network.removeListener(listener);
+        IOException error = null;
+        try {
+            sync();
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+            compaction.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CompletionException e) {
+            error = addFailure(error, e.getCause() instanceof UncheckedIOException
+                ? ((UncheckedIOException) e.getCause()).getCause() : new IOException(e.getCause()));
+        } finally {
+            compactor.shutdown();
+            try {
+                synchronized (this) {
+                    segment.close();
+                }
+            } catch (IOException e) {
+                error = addFailure(error, e);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // The first failure, with next attached to it if there already was one
+    private static IOException addFailure(IOException first, IOException next) {
+        if (first == null) {
+            return next;
+        }
+        first.addSuppressed(next);
+        return first;
+    }
+
+    // --- Appending ---
+
+    // Start a record in pending and return its position, to be passed to endRecord()
+    private int beginRecord(byte type, int payloadBytes) {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failure);
+        }
+        ensure(8 + 1 + 8 + payloadBytes);
+        int start = pending.position();
+        pending.position(start + 8);
+        pending.put(type);
+        pending.putLong(++lastLsn);
+        return start;
+    }
+
+    private void endRecord(int start) {
+        int end = pending.position();
+        CRC32 crc = new CRC32();
+        crc.update(pending.array(), start + 8, end - start - 8);
+        pending.putInt(start, end - start - 8);
+        pending.putInt(start + 4, (int) crc.getValue());
+        if (start == 0) {
+            pendingSince = System.currentTimeMillis();
+            notifyAll();
+        } else if (durability == Durability.SYNC || pending.position() >= FLUSH_BYTES) {
+            notifyAll();
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+    }
+
+    private void putString(String s) {
+        if (s == null) {
+            pending.putInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            pending.putInt(bytes.length);
+            pending.put(bytes);
+        }
+    }
+
+    private static int stringBytes(String s) {
+        return 4 + (s == null ? 0 : 3 * s.length());
+    }
+
+    // In SYNC mode, block until the record just appended is on disk
+    private synchronized void commit() {
+        if (durability != Durability.SYNC) {
+            return;
+        }
+        long lsn = lastLsn;
+        boolean interrupted = false;
+        while (syncedLsn < lsn && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failure);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            FileChannel channel;
+            long batchLsn;
+            boolean force;
+            synchronized (this) {
+                try {
+                    // SYNC flushes as soon as there is something to flush, the others once the oldest
+                    // pending record is an interval old or the buffer is large
+                    while (!closed && !forceRequested) {
+                        if (pending.position() == 0) {
+                            wait();
+                        } else if (durability == Durability.SYNC || pending.position() >= FLUSH_BYTES) {
+                            break;
+                        } else {
+                            long wait = pendingSince + flushIntervalMillis - System.currentTimeMillis();
+                            if (wait <= 0) {
+                                break;
+                            }
+                            wait(wait);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed && pending.position() == 0) {
+                    return;
+                }
+                force = durability != Durability.ASYNC || forceRequested;
+                forceRequested = false;
+                flushing = true;
+                batch = pending;
+                pending = spare;
+                spare = null;
+                channel = segment;
+                batchLsn = lastLsn;
+            }
+            IOException error = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                if (force) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (this) {
+                batch.clear();
+                spare = batch;
+                flushing = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    flushedLsn = batchLsn;
+                    if (force) {
+                        syncedLsn = batchLsn;
+                    }
+                }
+                notifyAll();
+                if (error != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private class Recorder implements GraphListener {
+        // Set between profileRemoving() and profileRemoved(): the edge changes in between are replayed
+        // by the REMOVE_PROFILE record
+        private boolean removing;
+
+        @Override
+        public void profileAdded(int id) {
+            Profile p = network.getProfile(id);
+            synchronized (WriteAheadLog.this) {
+                int start = beginRecord(ADD_PROFILE, stringBytes(p.getUsername()) + stringBytes(p.getName())
+                    + stringBytes(p.getProfileImage()));
+                putString(p.getUsername());
+                putString(p.getName());
+                putString(p.getProfileImage());
+                endRecord(start);
+            }
+            commit();
+        }
+
+        @Override
+        public void friendAdded(int u, int v) {
+            if (!removing) {
+                appendPair(ADD_FRIEND, u, v);
+            }
+        }
+
+        @Override
+        public void friendsAdded(int[] us, int[] vs, int count) {
+            synchronized (WriteAheadLog.this) {
+                int start = beginRecord(ADD_FRIENDS, 4 + 8 * count);
+                pending.putInt(count);
+                for (int k = 0; k < count; k++) {
+                    pending.putInt(us[k]);
+                    pending.putInt(vs[k]);
+                }
+                endRecord(start);
+            }
+            commit();
+        }
+
+        @Override
+        public void friendRemoved(int u, int v) {
+            if (!removing) {
+                appendPair(REMOVE_FRIEND, u, v);
+            }
+        }
+
+        @Override
+        public void profileRenamed(int id, String oldUsername) {
+            String username = network.getProfile(id).getUsername();
+            synchronized (WriteAheadLog.this) {
+                int start = beginRecord(RENAME, 4 + stringBytes(username));
+                pending.putInt(id);
+                putString(username);
+                endRecord(start);
+            }
+            commit();
+        }
+
+        @Override
+        public void profileRemoving(int id) {
+            synchronized (WriteAheadLog.this) {
+                int start = beginRecord(REMOVE_PROFILE, 4);
+                pending.putInt(id);
+                endRecord(start);
+            }
+            removing = true;
+            commit();
+        }
+
+        @Override
+        public void profileRemoved(int id, int lastId) {
+            removing = false;
+        }
+
+        private void appendPair(byte type, int u, int v) {
+            synchronized (WriteAheadLog.this) {
+                int start = beginRecord(type, 8);
+                pending.putInt(u);
+                pending.putInt(v);
+                endRecord(start);
+            }
+            commit();
+        }
+    }
+
+    // --- Recovery ---
+
+    private static Path segmentPath(Path base, int number) {
+        return base.resolveSibling(base.getFileName() + "." + number + ".wal");
+    }
+
+    // Log segments of base by number
+    private static TreeMap<Integer, Path> segments(Path base) throws IOException {
+        TreeMap<Integer, Path> segments = new TreeMap<>();
+        String prefix = base.getFileName() + ".";
+        Path dir = base.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*.wal")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String number = name.substring(prefix.length(), name.length() - ".wal".length());
+                if (!number.isEmpty() && number.chars().allMatch(Character::isDigit)) {
+                    segments.put(Integer.parseInt(number), file);
+                }
+            }
+        }
+        return segments;
+    }
+
+    /*
+     * Apply the records of one segment with an LSN above lsn and return the last LSN seen. Records at
+     * or below lsn are already in the snapshot. A damaged record ends the segment; in the last segment
+     * it is cut off, anywhere else it means records are missing.
+     */
+    private static long replay(Path file, SocialNetwork network, long lsn, boolean last) throws IOException {
+        long fileSize = Files.size(file);
+        long valid = 0;
+        try (InputStream stream = Files.newInputStream(file);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    // A clean end, or a length torn partway through
+                    if (valid == fileSize) {
+                        return lsn;
+                    }
+                    break;
+                }
+                byte[] body;
+                try {
+                    int checksum = in.readInt();
+                    if (length < 9 || length > fileSize - valid - 8) {
+                        break;
+                    }
+                    body = in.readNBytes(length);
+                    crc.reset();
+                    crc.update(body);
+                    if (body.length != length || (int) crc.getValue() != checksum) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.wrap(body);
+                byte type = record.get();
+                long recordLsn = record.getLong();
+                if (recordLsn > lsn) {
+                    apply(network, type, record);
+                    lsn = recordLsn;
+                }
+                valid += 8 + length;
+            }
+        }
+        if (!last) {
+            throw new IOException("Damaged record in " + file + " at byte " + valid);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(valid);
+        }
+        return lsn;
+    }
+
+    private static void apply(SocialNetwork network, byte type, ByteBuffer record) throws IOException {
+        switch (type) {
+            case ADD_PROFILE:
+                network.addProfile(new Profile(getString(record), getString(record), getString(record)));
+                break;
+            case ADD_FRIEND:
+                network.addFriend(record.getInt(), record.getInt());
+                break;
+            case ADD_FRIENDS: {
+                int count = record.getInt();
+                int[] us = new int[count];
+                int[] vs = new int[count];
+                for (int k = 0; k < count; k++) {
+                    us[k] = record.getInt();
+                    vs[k] = record.getInt();
+                }
+                network.addFriends(us, vs);
+                break;
+            }
+            case REMOVE_FRIEND:
+                network.removeFriend(record.getInt(), record.getInt());
+                break;
+            case REMOVE_PROFILE:
+                network.removeProfile(network.getProfile(record.getInt()));
+                break;
+            case RENAME: {
+                Profile p = network.getProfile(record.getInt());
+                p.changeUsername(getString(record));
+                break;
+            }
+            default:
+                throw new IOException("Unknown log record type " + type);
+        }
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String s = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return s;
+    }
+}
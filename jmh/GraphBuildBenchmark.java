@@ -0,0 +1,34 @@
+package src.graph;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to build a whole network: addProfile() for every profile, then addFriend() for every edge or
+ * one bulk addFriends().
+ *
+ * Each invocation builds the graph from scratch, so this is measured as single shots.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class GraphBuildBenchmark {
+
+    @Benchmark
+    public SocialNetwork sequentialAdds(GraphState state) {
+        return state.build(false);
+    }
+
+    @Benchmark
+    public SocialNetwork batchAdds(GraphState state) {
+        return state.build(true);
+    }
+}
@@ -0,0 +1,80 @@
+package src.graph;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-call cost of the read paths, on random profiles of a prebuilt network.
+ *
+ * Besides the raw SocialNetwork calls this covers what the Swing front end does: the Driver looks
+ * profiles up by username before each query, and the graph panel draws every edge and colors every
+ * node by its degree on each repaint.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class GraphQueryBenchmark {
+
+    @Benchmark
+    public boolean searchFriend(GraphState state) {
+        int k = state.nextInput();
+        return state.network.searchFriend(state.queryU[k], state.queryV[k]);
+    }
+
+    @Benchmark
+    public ArrayList<Profile> allFriends(GraphState state) {
+        return state.network.allFriends(state.queryU[state.nextInput()]);
+    }
+
+    @Benchmark
+    public void forEachNeighbor(GraphState state, Blackhole blackhole) {
+        state.network.adjacency().forEachNeighbor(state.queryU[state.nextInput()], blackhole::consume);
+    }
+
+    @Benchmark
+    public int mutualFriendCount(GraphState state) {
+        int k = state.nextInput();
+        return state.network.mutualFriendCount(state.queryU[k], state.queryV[k]);
+    }
+
+    @Benchmark
+    public int[] suggestFriends(GraphState state) {
+        return state.network.suggestFriends(state.queryU[state.nextInput()], 10);
+    }
+
+    /** Driver "List Friends" and profile viewer: username lookup, then the friend list. */
+    @Benchmark
+    public ArrayList<Profile> driverListFriends(GraphState state) {
+        return state.network.allFriends(state.network.getProfile(state.usernames[state.nextInput()]));
+    }
+
+    /** Driver "Check Friendship": two username lookups, then searchFriend(). */
+    @Benchmark
+    public boolean driverCheckFriendship(GraphState state) {
+        int k = state.nextInput();
+        Profile a = state.network.getProfile(state.usernames[k]);
+        Profile b = state.network.getProfile(state.usernames[(k + 1) & (GraphState.INPUTS - 1)]);
+        return state.network.searchFriend(a, b);
+    }
+
+    /** One panel repaint without the drawing: every edge, plus the degree of every node. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void panelRepaint(GraphState state, Blackhole blackhole) {
+        SocialNetwork network = state.network;
+        network.forEachEdge((u, v) -> blackhole.consume(u + v));
+        for (int i = 0; i < network.size(); i++) {
+            blackhole.consume(network.degree(network.getProfile(i)));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package src.graph;
+
+import java.util.ArrayList;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A random network shared by the benchmarks, with the pre-generated inputs they consume.
+ *
+ * The graph parameter is backend/vertices. Only combinations that fit in a few GB are listed by
+ * default: the matrix backends need n^2 ints or bits, so they stop at 10k and 100k vertices. Any
+ * combination can be given on the command line, e.g. -p graph=int/30000.
+ */
+@State(Scope.Benchmark)
+public class GraphState {
+    /** Distinct random inputs per benchmark; indexes wrap around so lookups never allocate. */
+    static final int INPUTS = 1 << 16;
+
+    @Param({ "int/1000", "int/10000", "bit/1000", "bit/10000", "bit/100000",
+             "sparse/1000", "sparse/10000", "sparse/100000", "sparse/1000000", "csr/1000000" })
+    public String graph;
+
+    /** Average friends per profile, i.e. the density. */
+    @Param({ "10", "100" })
+    public int friends;
+
+    String backend;
+    int vertices;
+    String[] profileUsernames;
+    int[] edgeU;
+    int[] edgeV;
+    SocialNetwork network;
+
+    // Random vertex ids and usernames to query
+    int[] queryU = new int[INPUTS];
+    int[] queryV = new int[INPUTS];
+    String[] usernames = new String[INPUTS];
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        backend = graph.substring(0, graph.indexOf('/'));
+        vertices = Integer.parseInt(graph.substring(graph.indexOf('/') + 1));
+        Random random = new Random(42);
+        profileUsernames = new String[vertices];
+        for (int i = 0; i < vertices; i++) {
+            profileUsernames[i] = "user" + i;
+        }
+        int edges = (int) ((long) vertices * friends / 2);
+        edgeU = new int[edges];
+        edgeV = new int[edges];
+        for (int e = 0; e < edges; e++) {
+            edgeU[e] = random.nextInt(vertices);
+            edgeV[e] = random.nextInt(vertices);
+        }
+        for (int k = 0; k < INPUTS; k++) {
+            queryU[k] = random.nextInt(vertices);
+            queryV[k] = random.nextInt(vertices);
+            usernames[k] = "user" + queryU[k];
+        }
+        network = build(false);
+    }
+
+    /**
+     * A new network holding new profiles and the generated edges.
+     *
+     * Profiles register with every network they join, so each build makes its own to keep earlier
+     * networks collectable.
+     *
+     * @param batch add the edges with one addFriends() call; otherwise with one addFriend() call per
+     *        edge, as the Driver does
+     */
+    SocialNetwork build(boolean batch) {
+        boolean csr = backend.equals("csr");
+        SocialNetwork built = new SocialNetwork(new ArrayList<>(), csr ? new SparseAdjacency() : adjacency());
+        for (String username : profileUsernames) {
+            built.addProfile(new Profile(username, username, null));
+        }
+        if (batch) {
+            built.addFriends(edgeU, edgeV);
+        } else {
+            for (int e = 0; e < edgeU.length; e++) {
+                built.addFriend(edgeU[e], edgeV[e]);
+            }
+        }
+        return csr ? built.freeze() : built;
+    }
+
+    private Adjacency adjacency() {
+        switch (backend) {
+            case "int":
+                return new IntMatrixAdjacency();
+            case "bit":
+                return new BitMatrixAdjacency();
+            case "sparse":
+                return new SparseAdjacency();
+            default:
+                throw new IllegalArgumentException("Unknown backend " + backend);
+        }
+    }
+
+    /**
+     * Index of the next random input to use.
+     */
+    int nextInput() {
+        return next = (next + 1) & (INPUTS - 1);
+    }
+}
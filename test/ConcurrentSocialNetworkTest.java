@@ -0,0 +1,128 @@
+package src.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class ConcurrentSocialNetworkTest {
+    private static final int THREADS = 8;
+
+    @Test
+    public void edgesStaySymmetricUnderContention() throws Exception {
+        ConcurrentSocialNetwork network = new ConcurrentSocialNetwork();
+        // Few vertices, so the writers keep hitting the same pairs
+        int initial = 40;
+        for (int i = 0; i < initial; i++) {
+            network.addProfile(new Profile("user" + i, "User " + i, null));
+        }
+        AtomicInteger added = new AtomicInteger(initial);
+        runConcurrently(THREADS, t -> {
+            Random random = new Random(t);
+            for (int k = 0; k < 50_000; k++) {
+                int u = random.nextInt(initial);
+                int v = random.nextInt(initial);
+                if (random.nextBoolean()) {
+                    network.addFriend(u, v);
+                } else {
+                    network.removeFriend(v, u);
+                }
+                if (k % 500 == 0) {
+                    // Growing the arrays copies the rows while edges are being written
+                    network.addProfile(new Profile("extra" + added.getAndIncrement(), "Extra", null));
+                }
+            }
+        });
+
+        int n = network.size();
+        assertEquals(added.get(), n);
+        long degreeSum = 0;
+        long edges = 0;
+        for (int u = 0; u < n; u++) {
+            degreeSum += network.degree(u);
+            assertEquals(network.degree(u), network.allFriends(u).size());
+            for (int v = 0; v < n; v++) {
+                assertEquals("edge " + u + "-" + v, network.searchFriend(u, v), network.searchFriend(v, u));
+                if (u < v && network.searchFriend(u, v)) {
+                    edges++;
+                }
+            }
+        }
+        assertEquals(2 * edges, degreeSum);
+        assertTrue("the writers should leave some edges", edges > 0);
+    }
+
+    @Test
+    public void concurrentClaimsOfOneUsernameLeaveOneOwner() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            ConcurrentSocialNetwork network = new ConcurrentSocialNetwork();
+            List<Profile> profiles = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                Profile p = new Profile("user" + t, "User " + t, null);
+                network.addProfile(p);
+                profiles.add(p);
+            }
+            // Half the threads rename to the contested name, the other half add a profile with it
+            runConcurrently(THREADS, t -> {
+                if (t % 2 == 0) {
+                    try {
+                        profiles.get(t).changeUsername("taken");
+                    } catch (IllegalArgumentException lost) {
+                        // Another thread got it first
+                    }
+                } else {
+                    network.addProfile(new Profile("taken", "Newcomer", null));
+                }
+            });
+
+            int owners = 0;
+            for (int id = 0; id < network.size(); id++) {
+                Profile p = network.getProfile(id);
+                assertSame("profile " + id + " must be reachable by its username", p,
+                    network.getProfile(p.getUsername()));
+                if (p.getUsername().equals("taken")) {
+                    owners++;
+                }
+            }
+            assertEquals(1, owners);
+        }
+    }
+
+    private interface Task {
+        void run(int thread) throws Exception;
+    }
+
+    // Start the task on threads threads at once and wait for all of them, rethrowing the first failure
+    private static void runConcurrently(int threads, Task task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package src.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import org.junit.Test;
+
+public class ProfileStoreTest {
+
+    @Test
+    public void failedRenameKeepsOldUsernameEverywhere() {
+        ProfileStore store = new ProfileStore();
+        Profile profile = store.add("a", "A", null);
+        ArrayList<Profile> profiles = new ArrayList<>();
+        profiles.add(profile);
+        SocialNetwork network = new SocialNetwork(profiles, new SparseAdjacency());
+        // Joined after the network, so it is told about the rename second and refuses it
+        profile.joinedNetwork(new ProfileIndex() {
+            @Override
+            public Profile getProfile(String username) {
+                return null;
+            }
+
+            @Override
+            public void usernameChanged(Profile renamed, String oldUsername) {
+                throw new IllegalArgumentException("Username '" + renamed.getUsername() + "' is already taken");
+            }
+        });
+
+        try {
+            profile.changeUsername("b");
+            fail("the rename should be refused");
+        } catch (IllegalArgumentException expected) {
+            // Refused by the second index
+        }
+        assertEquals("a", profile.getUsername());
+        assertEquals("a", store.username(0));
+        assertSame(profile, network.getProfile("a"));
+        assertNull(network.getProfile("b"));
+    }
+
+    @Test
+    public void renameMovesTheIndexEntry() {
+        ProfileStore store = new ProfileStore();
+        Profile profile = store.add("a", "A", null);
+        ArrayList<Profile> profiles = new ArrayList<>();
+        profiles.add(profile);
+        SocialNetwork network = new SocialNetwork(profiles, new SparseAdjacency());
+
+        profile.changeUsername("b");
+        assertEquals("b", store.username(0));
+        assertSame(profile, network.getProfile("b"));
+        assertNull(network.getProfile("a"));
+    }
+}
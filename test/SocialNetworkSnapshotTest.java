@@ -0,0 +1,213 @@
+package src.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class SocialNetworkSnapshotTest {
+    private static final int PROFILES = 1200;
+    private static final int FRIENDS_PER_PROFILE = 8;
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> backends() {
+        return Arrays.asList(new Object[][] {
+            {"IntMatrixAdjacency", (Supplier<Adjacency>) IntMatrixAdjacency::new},
+            {"BitMatrixAdjacency", (Supplier<Adjacency>) BitMatrixAdjacency::new},
+            {"SparseAdjacency", (Supplier<Adjacency>) SparseAdjacency::new},
+        });
+    }
+
+    private final Supplier<Adjacency> backend;
+
+    public SocialNetworkSnapshotTest(String name, Supplier<Adjacency> backend) {
+        this.backend = backend;
+    }
+
+    @Test
+    public void snapshotTakenMidIngestStaysStable() throws Exception {
+        SocialNetwork network = new SocialNetwork(new ArrayList<>(), backend.get());
+        CompletableFuture<SocialNetwork> taken = new CompletableFuture<>();
+        CompletableFuture<Graph> atSnapshot = new CompletableFuture<>();
+        Thread writer = new Thread(() -> {
+            try {
+                Random random = new Random(42);
+                for (int i = 0; i < PROFILES; i++) {
+                    network.addProfile(new Profile("user" + i, "User " + i, null));
+                    for (int k = 0; k < FRIENDS_PER_PROFILE && i > 0; k++) {
+                        network.addFriend(i, random.nextInt(i));
+                    }
+                    if (i % 7 == 0 && i > 1) {
+                        network.removeFriend(i, random.nextInt(i));
+                    }
+                    if (i == PROFILES / 2) {
+                        // Snapshots are taken on the writer's thread; freeze() copies the same moment
+                        SocialNetwork snapshot = network.snapshot();
+                        atSnapshot.complete(Graph.of(network.freeze()));
+                        taken.complete(snapshot);
+                    }
+                }
+            } catch (Throwable e) {
+                taken.completeExceptionally(e);
+                atSnapshot.completeExceptionally(e);
+            }
+        }, "writer");
+        writer.start();
+
+        SocialNetwork snapshot = taken.get(1, TimeUnit.MINUTES);
+        Graph expected = atSnapshot.get(1, TimeUnit.MINUTES);
+        // Read while the writer keeps going, then again once it is done
+        Graph whileWriting = Graph.of(snapshot);
+        writer.join(TimeUnit.MINUTES.toMillis(1));
+        assertTrue("writer should finish", !writer.isAlive());
+        Graph afterWriting = Graph.of(snapshot);
+
+        assertEquals(PROFILES, network.size());
+        assertEquals(PROFILES / 2 + 1, expected.size);
+        expected.assertSame(whileWriting);
+        expected.assertSame(afterWriting);
+        assertTrue("the network should have moved on", network.friendshipCount() > snapshot.friendshipCount());
+    }
+
+    @Test
+    public void snapshotIsReadOnly() {
+        SocialNetwork network = new SocialNetwork(new ArrayList<>(), backend.get());
+        network.addProfile(new Profile("a", "A", null));
+        network.addProfile(new Profile("b", "B", null));
+        SocialNetwork snapshot = network.snapshot();
+        try {
+            snapshot.addFriend(0, 1);
+            fail("addFriend() on a snapshot should throw");
+        } catch (UnsupportedOperationException expected) {
+            // Read-only
+        }
+        try {
+            snapshot.addProfile(new Profile("c", "C", null));
+            fail("addProfile() on a snapshot should throw");
+        } catch (UnsupportedOperationException expected) {
+            // Read-only
+        }
+        network.addFriend(0, 1);
+        assertEquals(0, snapshot.degree(0));
+        assertEquals(0, snapshot.friendshipCount());
+    }
+
+    @Test
+    public void removeProfileFromReadOnlyCopyChangesNothing() {
+        SocialNetwork network = new SocialNetwork(new ArrayList<>(), backend.get());
+        network.addProfile(new Profile("x", "X", null));
+        network.addProfile(new Profile("y", "Y", null));
+        network.addFriend(0, 1);
+        for (SocialNetwork copy : Arrays.asList(network.freeze(), network.snapshot())) {
+            Graph before = Graph.of(copy);
+            boolean[] notified = new boolean[1];
+            copy.addListener(new GraphListener() {
+                @Override
+                public void profileRemoving(int id) {
+                    notified[0] = true;
+                }
+            });
+            try {
+                copy.removeProfile(copy.getProfile("x"));
+                fail("removeProfile() on a read-only copy should throw");
+            } catch (UnsupportedOperationException expected) {
+                // Read-only
+            }
+            assertTrue("listeners must not hear of a removal that did not happen", !notified[0]);
+            before.assertSame(Graph.of(copy));
+            assertEquals(copy.size(), copy.adjacency().size());
+            assertEquals("x", copy.getProfile("x").getUsername());
+            assertEquals("y", copy.getProfile("y").getUsername());
+        }
+        assertEquals(2, network.size());
+        assertEquals(1, network.friendshipCount());
+    }
+
+    @Test
+    public void frozenCopyDoesNotJoinItsProfiles() {
+        SocialNetwork network = new SocialNetwork(new ArrayList<>(), backend.get());
+        Profile x = new Profile("x", "X", null);
+        network.addProfile(x);
+        SocialNetwork frozen = network.freeze();
+        x.changeUsername("z");
+        assertSame(x, network.getProfile("z"));
+        // The copy is not told about the rename, so it still indexes the old username
+        assertEquals(null, frozen.getProfile("z"));
+        assertEquals(0, frozen.indexOf("x"));
+        assertSame(x, frozen.getProfile(0));
+    }
+
+    @Test
+    public void readOnlyBackendsAreTheirOwnSnapshot() throws Exception {
+        SocialNetwork network = new SocialNetwork(new ArrayList<>(), backend.get());
+        for (int i = 0; i < 20; i++) {
+            network.addProfile(new Profile("user" + i, "User " + i, null));
+            network.addFriend(i, i / 2);
+        }
+        Adjacency csr = network.freeze().adjacency();
+        assertSame(csr, csr.snapshot());
+
+        Path file = Files.createTempFile("snapshot-test", ".snet");
+        try {
+            network.save(file);
+            SocialNetwork loaded = SocialNetwork.load(file);
+            assertSame(loaded.adjacency(), loaded.adjacency().snapshot());
+            Graph.of(network).assertSame(Graph.of(loaded.snapshot()));
+            try {
+                loaded.removeProfile(loaded.getProfile("user3"));
+                fail("removeProfile() on a loaded network should throw");
+            } catch (UnsupportedOperationException expected) {
+                // Read-only
+            }
+            Graph.of(network).assertSame(Graph.of(loaded));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // What the test compares: size(), every degree and every edge from forEachEdge()
+    private static final class Graph {
+        final int size;
+        final int[] degrees;
+        final long[] edges;
+
+        private Graph(int size, int[] degrees, long[] edges) {
+            this.size = size;
+            this.degrees = degrees;
+            this.edges = edges;
+        }
+
+        static Graph of(SocialNetwork network) {
+            int n = network.size();
+            int[] degrees = new int[n];
+            for (int i = 0; i < n; i++) {
+                degrees[i] = network.degree(i);
+            }
+            ArrayList<Long> edges = new ArrayList<>();
+            network.forEachEdge((u, v) -> edges.add(((long) u << 32) | v));
+            return new Graph(n, degrees, edges.stream().mapToLong(Long::longValue).toArray());
+        }
+
+        void assertSame(Graph other) {
+            assertEquals("size", size, other.size);
+            assertArrayEquals("degrees", degrees, other.degrees);
+            assertArrayEquals("edges", edges, other.edges);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package src.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WriteAheadLogTest {
+    private Path dir;
+    private Path base;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("wal-test");
+        base = dir.resolve("network");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void tornBodyIsCutOff() throws IOException {
+        logTwoProfiles();
+        Path segment = base.resolveSibling("network.1.wal");
+        long size = Files.size(segment);
+        // A whole header followed by part of a body
+        append(segment, new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 5, 6});
+        assertRecoversAfterDamage(segment, size);
+    }
+
+    @Test
+    public void tornLengthHeaderIsCutOff() throws IOException {
+        logTwoProfiles();
+        Path segment = base.resolveSibling("network.1.wal");
+        long size = Files.size(segment);
+        // Only two of the four bytes of the next record's length
+        append(segment, new byte[] {0, 0});
+        assertRecoversAfterDamage(segment, size);
+    }
+
+    private void logTwoProfiles() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(base, new SparseAdjacency(), WriteAheadLog.Durability.SYNC)) {
+            log.network().addProfile(new Profile("a", "A", null));
+            log.network().addProfile(new Profile("b", "B", null));
+        }
+    }
+
+    // Recovery drops the damage, and what is logged after it survives the next recovery
+    private void assertRecoversAfterDamage(Path segment, long validSize) throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(base, new SparseAdjacency(), WriteAheadLog.Durability.SYNC)) {
+            assertEquals(validSize, Files.size(segment));
+            SocialNetwork network = log.network();
+            assertEquals(2, network.size());
+            network.addProfile(new Profile("c", "C", null));
+            network.addFriend(0, 2);
+        }
+        try (WriteAheadLog log = WriteAheadLog.open(base, new SparseAdjacency(), WriteAheadLog.Durability.SYNC)) {
+            SocialNetwork network = log.network();
+            assertEquals(3, network.size());
+            assertEquals("c", network.getProfile(2).getUsername());
+            assertEquals(1, network.friendshipCount());
+            assertEquals(1, network.degree(2));
+        }
+    }
+
+    private static void append(Path file, byte[] bytes) throws IOException {
+        Files.write(file, bytes, StandardOpenOption.APPEND);
+    }
+}